@@ -7,11 +7,29 @@ const API_BASE_URL = 'http://localhost:8080';
 const apiClient = axios.create({
   baseURL: API_BASE_URL,
   headers: {
-    'X-User-Id': '1',
     'Content-Type': 'application/json',
   },
 });
 
+// Identify the signed-in user; anonymous requests omit the header and are rate limited per client
+apiClient.interceptors.request.use(config => {
+  const storedUser = localStorage.getItem('user');
+  const userId = storedUser ? JSON.parse(storedUser).userId : null;
+  if (typeof userId === 'string' && /^\d+$/.test(userId)) {
+    config.headers['X-User-Id'] = userId;
+  }
+  return config;
+});
+
+const PURCHASE_ATTEMPTS = 3;
+
+// Idempotency key of the checkout that has not received a definitive answer yet
+let pendingPurchaseKey: string | null = null;
+
+// Network errors, timeouts and 5xx may have reached the server: retry with the same key
+const isRetryable = (error: unknown): boolean =>
+  axios.isAxiosError(error) && (!error.response || error.response.status >= 500);
+
 export interface LoginResponse {
   token: string;
   userId: string;
@@ -35,7 +53,8 @@ export interface BackendCartItem {
 export const api = {
   login: async (email: string, password: string): Promise<LoginResponse> => {
     // Keep mock login for now since backend doesn't have auth yet
-    const userId = `user_${Date.now()}`;
+    // The backend identifies users by a numeric X-User-Id
+    const userId = String(Date.now() * 1000 + Math.floor(Math.random() * 1000));
     const token = `mock_token_${btoa(email)}_${Date.now()}`;
     
     return {
@@ -168,9 +187,28 @@ export const api = {
   },
 
   purchase: async (productIds: string[]): Promise<{ success: boolean; orderId: string }> => {
-    await apiClient.post('/api/cart/purchase');
-    
-    const orderId = `order_${Date.now()}`;
-    return { success: true, orderId };
+    // One key per checkout attempt: retries (automatic or the user clicking again after
+    // a network failure) reuse it, so the server returns the same order instead of a new one
+    pendingPurchaseKey ??= crypto.randomUUID();
+    const idempotencyKey = pendingPurchaseKey;
+
+    for (let attempt = 1; ; attempt++) {
+      try {
+        const response = await apiClient.post('/api/cart/purchase', null, {
+          headers: { 'Idempotency-Key': idempotencyKey },
+        });
+        // The server answered: the order was either accepted or definitively rejected
+        pendingPurchaseKey = null;
+        if (!response.data.success) {
+          throw new Error(response.data.message || 'Failed to complete purchase');
+        }
+        return { success: true, orderId: response.data.data.orderId };
+      } catch (error) {
+        if (!isRetryable(error) || attempt >= PURCHASE_ATTEMPTS) {
+          throw error;
+        }
+        await new Promise(resolve => setTimeout(resolve, 200 * attempt));
+      }
+    }
   }
 };
@@ -20,7 +20,8 @@ export const mockApi = {
     await delay();
     
     // Simple mock - generate a temporary account
-    const userId = `user_${Date.now()}`;
+    // Numeric, so it can be sent to the backend as X-User-Id
+    const userId = String(Date.now() * 1000 + Math.floor(Math.random() * 1000));
     const token = `mock_token_${btoa(email)}_${Date.now()}`;
     
     return {
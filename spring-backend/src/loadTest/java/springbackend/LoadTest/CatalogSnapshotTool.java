@@ -0,0 +1,37 @@
+package springbackend.LoadTest;
+
+import springbackend.DTO.ProductDetailResponse;
+import springbackend.Service.CatalogSnapshotWriter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 目录快照生成工具: 把产品详情 JSON 数组 (与 GET /products/{id} 的返回格式相同) 转换为快照文件
+ *
+ * ./gradlew catalogSnapshot -Pcatalog=catalog.json -Psnapshot=catalog.snapshot
+ */
+public final class CatalogSnapshotTool {
+
+    private CatalogSnapshotTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CatalogSnapshotTool <catalog.json> <snapshot file>");
+            System.exit(2);
+        }
+        List<ProductDetailResponse> products = new ObjectMapper().readValue(
+                Path.of(args[0]).toFile(), new TypeReference<List<ProductDetailResponse>>() {});
+        try {
+            CatalogSnapshotWriter.write(Path.of(args[1]), products);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid catalog " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("Wrote %d products to %s%n", products.size(), args[1]);
+    }
+}
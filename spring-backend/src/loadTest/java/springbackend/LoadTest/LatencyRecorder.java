@@ -0,0 +1,49 @@
+package springbackend.LoadTest;
+
+import java.util.Arrays;
+
+/**
+ * 单个接口的延迟记录 - 原始样本存入 long 数组, 结束时排序计算分位数
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[1 << 14];
+    private int count;
+    private long errors;
+    private long rejected;
+
+    synchronized void recordSuccess(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    synchronized void recordError() {
+        errors++;
+    }
+
+    synchronized void recordRejected() {
+        rejected++;
+    }
+
+    synchronized Summary summarize(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Summary(count, errors, rejected, count / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted.length == 0 ? 0 : sorted[sorted.length - 1]);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    record Summary(long ok, long errors, long rejected, double throughput,
+                   long p50, long p90, long p99, long p999, long max) {
+    }
+}
@@ -0,0 +1,246 @@
+package springbackend.LoadTest;
+
+import springbackend.LoadTest.Workload.Endpoint;
+import springbackend.LoadTest.Workload.Scenario;
+import springbackend.DTO.ProductDetailResponse;
+import springbackend.Service.CatalogSnapshotWriter;
+import springbackend.SpringBackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端压测入口
+ * 启动嵌入式 Redis + 推荐引擎桩 + 完整的 Spring 应用, 用闭环并发客户端跑指定负载,
+ * 结束后按接口输出吞吐量和延迟分位数
+ *
+ * ./gradlew loadTest -Pworkload=FLASH_SALE -Pduration=60 -Pconcurrency=64
+ * 引擎编码: -Pprotocol=smile
+ * 引擎实例数 (负载均衡 / 对冲): -Pengines=3
+ * 从目录快照读取产品详情 (先按引擎桩的目录生成快照): -Psnapshot=true
+ * 引擎桩参数: -Pstub.median-ms=5 -Pstub.p99-ms=50 -Pstub.error-rate=0.01
+ */
+public final class LoadTestRunner {
+
+    private static final String[] SEARCH_TERMS = {"wireless", "organic", "smart", "cotton", "blue", "portble"};
+
+    private final Workload workload;
+    private final String baseUrl;
+    private final int catalogSize;
+    private final int users;
+    private final HttpClient client;
+    private final Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    private LoadTestRunner(Workload workload, String baseUrl, int catalogSize, int users) {
+        this.workload = workload;
+        this.baseUrl = baseUrl;
+        this.catalogSize = catalogSize;
+        this.users = users;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Workload workload = Workload.valueOf(System.getProperty("load.workload", "BROWSE_HEAVY"));
+        int durationSeconds = Integer.getInteger("load.duration", 30);
+        int warmupSeconds = Integer.getInteger("load.warmup", 5);
+        int concurrency = Integer.getInteger("load.concurrency", 32);
+        int catalogSize = Integer.getInteger("load.catalog-size", 1000);
+        int users = Integer.getInteger("load.users", 1000);
+        String protocol = System.getProperty("load.protocol", "json");
+        int engineCount = Integer.getInteger("load.engines", 1);
+        boolean snapshot = Boolean.getBoolean("load.snapshot");
+
+        int redisPort = freePort();
+        RedisServer redis = new RedisServer(redisPort);
+        redis.start();
+        List<StubEngine> engines = new ArrayList<>();
+        for (int i = 0; i < engineCount; i++) {
+            engines.add(StubEngine.start(StubEngine.Profile.fromSystemProperties(), catalogSize));
+        }
+        String engineUrls = String.join(",", engines.stream().map(StubEngine::url).toList());
+        Path snapshotFile = snapshot ? writeSnapshot(catalogSize) : null;
+
+        // 命令行参数优先级高于 application.yml
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(SpringBackendApplication.class).run(
+                "--server.port=0",
+                "--spring.data.redis.host=127.0.0.1",
+                "--spring.data.redis.port=" + redisPort,
+                "--recommendation.engine.url=" + engines.get(0).url(),
+                "--recommendation.engine.urls=" + engineUrls,
+                "--recommendation.engine.protocol=" + protocol,
+                "--catalog.snapshot.path=" + (snapshotFile != null ? snapshotFile : ""),
+                "--logging.level.springbackend=WARN",
+                "--logging.level.org.springframework.data.redis=WARN");
+
+        try {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            LoadTestRunner runner = new LoadTestRunner(workload, "http://127.0.0.1:" + port, catalogSize, users);
+            System.out.printf(Locale.ROOT, "Running %s: %ds (+%ds warm-up), concurrency=%d, catalog=%d, users=%d%n",
+                    workload, durationSeconds, warmupSeconds, concurrency, catalogSize, users);
+            runner.run(concurrency, warmupSeconds, durationSeconds);
+            for (StubEngine engine : engines) {
+                System.out.printf(Locale.ROOT, "Stub engine %s served %d requests (%d behaviors)%n",
+                        engine.url(), engine.requestCount(), engine.behaviorCount());
+            }
+        } finally {
+            app.close();
+            engines.forEach(StubEngine::stop);
+            redis.stop();
+            if (snapshotFile != null) {
+                Files.deleteIfExists(snapshotFile);
+            }
+        }
+    }
+
+    /**
+     * 按引擎桩的目录生成快照文件
+     */
+    private static Path writeSnapshot(int catalogSize) throws IOException {
+        List<ProductDetailResponse> products = new ArrayList<>(catalogSize);
+        for (long id = 1; id <= catalogSize; id++) {
+            products.add(StubEngine.detail(id));
+        }
+        Path file = Files.createTempFile("catalog", ".snapshot");
+        CatalogSnapshotWriter.write(file, products);
+        return file;
+    }
+
+    private void run(int concurrency, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.submit(this::loop);
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        recording = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        recording = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        running = false;
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+        report(elapsed);
+    }
+
+    private void loop() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            Scenario scenario = workload.nextScenario();
+            long userId = random.nextLong(1, users + 1);
+            long productId = workload.nextProductId(catalogSize);
+            for (Endpoint step : scenario.steps()) {
+                if (!running) {
+                    return;
+                }
+                execute(step, userId, productId);
+            }
+        }
+    }
+
+    private void execute(Endpoint endpoint, long userId, long productId) {
+        HttpRequest.Builder request = switch (endpoint) {
+            case MENU -> get("/api/menu");
+            case PRODUCT_DETAIL -> get("/api/products/" + productId);
+            case SEARCH -> get("/api/products/search?q="
+                    + SEARCH_TERMS[ThreadLocalRandom.current().nextInt(SEARCH_TERMS.length)]);
+            case ADD_TO_CART -> post("/api/cart/add", "{\"productId\":" + productId + "}");
+            case VIEW_CART -> get("/api/cart");
+            case PURCHASE -> post("/api/cart/purchase", "");
+        };
+        request.header("X-User-Id", Long.toString(userId));
+
+        LatencyRecorder recorder = recorders.get(endpoint);
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            long elapsed = System.nanoTime() - start;
+            if (!recording) {
+                return;
+            }
+            if (response.statusCode() == 429) {
+                recorder.recordRejected();
+            } else if (response.statusCode() != 200 || !response.body().contains("\"success\":true")) {
+                recorder.recordError();
+            } else {
+                recorder.recordSuccess(elapsed);
+            }
+        } catch (IOException e) {
+            if (recording) {
+                recorder.recordError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET();
+    }
+
+    private HttpRequest.Builder post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    private void report(double seconds) {
+        System.out.printf(Locale.ROOT, "%n%-26s %9s %7s %8s %10s %8s %8s %8s %8s %8s%n",
+                "endpoint", "ok", "errors", "429", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long totalOk = 0;
+        for (Map.Entry<Endpoint, LatencyRecorder> entry : recorders.entrySet()) {
+            LatencyRecorder.Summary s = entry.getValue().summarize(seconds);
+            if (s.ok() + s.errors() + s.rejected() == 0) {
+                continue;
+            }
+            totalOk += s.ok();
+            System.out.printf(Locale.ROOT, "%-26s %9d %7d %8d %10.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    entry.getKey().label(), s.ok(), s.errors(), s.rejected(), s.throughput(),
+                    millis(s.p50()), millis(s.p90()), millis(s.p99()), millis(s.p999()), millis(s.max()));
+        }
+        System.out.printf(Locale.ROOT, "%nGoodput: %.1f req/s over %.1fs%n", totalOk / seconds, seconds);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package springbackend.LoadTest;
+
+import springbackend.DTO.ProductDTO;
+import springbackend.DTO.ProductDetailResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内推荐引擎桩 - 实现 RecommendEngineService 调用的接口
+ * GET  /recommendations?userId=  -> List<ProductDTO>
+ * GET  /products/{id}            -> ProductDetailResponse
+ * GET  /images?productId=        -> List<String>
+ * POST /behavior                 -> 200
+ * 每个请求按对数正态分布注入延迟, 并按比例返回 500
+ * Accept 为 application/x-jackson-smile 时返回 Smile 编码
+ */
+public final class StubEngine {
+
+    static final String[] CATEGORIES = {"Daily Supplies", "Food", "Electronics", "Household"};
+    static final String[] WORDS = {"wireless", "organic", "portable", "smart", "fresh", "silent", "compact",
+            "premium", "cotton", "bluetooth", "stainless", "ultrasonic", "handheld", "eco", "classic"};
+
+    /**
+     * 延迟 / 错误分布
+     * medianMillis 与 p99Millis 确定对数正态分布参数
+     */
+    public record Profile(double medianMillis, double p99Millis, double errorRate) {
+
+        private static final double Z_99 = 2.326;
+
+        public static Profile fromSystemProperties() {
+            return new Profile(
+                    Double.parseDouble(System.getProperty("stub.median-ms", "5")),
+                    Double.parseDouble(System.getProperty("stub.p99-ms", "50")),
+                    Double.parseDouble(System.getProperty("stub.error-rate", "0.0")));
+        }
+
+        long sampleMillis() {
+            if (medianMillis <= 0) {
+                return 0;
+            }
+            double mu = Math.log(medianMillis);
+            double sigma = Math.max(0, (Math.log(Math.max(p99Millis, medianMillis)) - mu) / Z_99);
+            return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Profile profile;
+    private final int catalogSize;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder behaviors = new LongAdder();
+
+    private StubEngine(Profile profile, int catalogSize) throws IOException {
+        this.profile = profile;
+        this.catalogSize = catalogSize;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/recommendations", this::recommendations);
+        server.createContext("/products/", this::product);
+        server.createContext("/images", this::images);
+        server.createContext("/behavior", this::behavior);
+    }
+
+    public static StubEngine start(Profile profile, int catalogSize) throws IOException {
+        StubEngine engine = new StubEngine(profile, catalogSize);
+        engine.server.start();
+        return engine;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long behaviorCount() {
+        return behaviors.sum();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ==================== 接口实现 ====================
+
+    private void recommendations(HttpExchange exchange) throws IOException {
+        if (!simulate(exchange)) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<ProductDTO> products = new ArrayList<>(9);
+        for (int i = 0; i < 9; i++) {
+            products.add(summary(random.nextLong(1, catalogSize + 1)));
+        }
+        writeBody(exchange, products);
+    }
+
+    private void product(HttpExchange exchange) throws IOException {
+        if (!simulate(exchange)) {
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        long id = Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
+        writeBody(exchange, detail(id));
+    }
+
+    private void images(HttpExchange exchange) throws IOException {
+        if (!simulate(exchange)) {
+            return;
+        }
+        List<String> images = new ArrayList<>(9);
+        for (int i = 1; i <= 9; i++) {
+            images.add("https://example.com/related/" + i + ".jpg");
+        }
+        writeBody(exchange, images);
+    }
+
+    private void behavior(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+        }
+        if (!simulate(exchange)) {
+            return;
+        }
+        behaviors.increment();
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+
+    /**
+     * 注入延迟和错误, 返回 false 表示已返回错误响应
+     */
+    private boolean simulate(HttpExchange exchange) throws IOException {
+        requests.increment();
+        long delay = profile.sampleMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (profile.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < profile.errorRate()) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return false;
+        }
+        return true;
+    }
+
+    private void writeBody(HttpExchange exchange, Object body) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        boolean smile = accept != null && accept.contains("x-jackson-smile");
+        byte[] bytes = (smile ? smileMapper : objectMapper).writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", smile ? "application/x-jackson-smile" : "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 根据 id 确定性生成产品, 保证同一 id 每次返回相同内容
+     */
+    static ProductDTO summary(long id) {
+        String title = capitalize(WORDS[(int) (id % WORDS.length)]) + " "
+                + capitalize(WORDS[(int) ((id / WORDS.length) % WORDS.length)]) + " " + id;
+        return ProductDTO.builder()
+                .id(id)
+                .title(title)
+                .category(CATEGORIES[(int) (id % CATEGORIES.length)])
+                .price(5.0 + (id % 200))
+                .images(List.of("https://example.com/products/" + id + ".jpg"))
+                .build();
+    }
+
+    /**
+     * 与 GET /products/{id} 返回内容一致的产品详情 (用于生成目录快照)
+     */
+    static ProductDetailResponse detail(long id) {
+        ProductDTO summary = summary(id);
+        return ProductDetailResponse.builder()
+                .id(id)
+                .title(summary.getTitle())
+                .category(summary.getCategory())
+                .description("Description of " + summary.getTitle().toLowerCase())
+                .price(summary.getPrice())
+                .images(summary.getImages())
+                .build();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,112 @@
+package springbackend.LoadTest;
+
+import springbackend.DTO.BehaviorMessage;
+import springbackend.DTO.ProductDTO;
+import springbackend.DTO.ProductDetailResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 引擎传输编码对比: JSON vs Smile
+ * 对 RecommendEngineService 的每种调用载荷, 统计每次调用的字节数和编码/解码 CPU 时间 (线程 CPU 时间)
+ *
+ * ./gradlew wireBenchmark [-Piterations=200000]
+ */
+public final class WireProtocolBenchmark {
+
+    private record Payload(String call, Object value, JavaType type) {
+    }
+
+    private WireProtocolBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("bench.iterations", 200_000);
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+        List<ProductDTO> menu = new ArrayList<>();
+        for (long id = 1; id <= 9; id++) {
+            menu.add(StubEngine.summary(id));
+        }
+        ProductDTO summary = StubEngine.summary(42);
+        ProductDetailResponse detail = ProductDetailResponse.builder()
+                .id(summary.getId())
+                .title(summary.getTitle())
+                .category(summary.getCategory())
+                .description("Description of " + summary.getTitle().toLowerCase(Locale.ROOT))
+                .price(summary.getPrice())
+                .images(summary.getImages())
+                .build();
+        List<String> images = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) {
+            images.add("https://example.com/related/" + i + ".jpg");
+        }
+        BehaviorMessage behavior = BehaviorMessage.builder()
+                .productId(42L)
+                .title(summary.getTitle())
+                .category(summary.getCategory())
+                .action("CLICK")
+                .userId(1001L)
+                .build();
+
+        List<Payload> payloads = List.of(
+                new Payload("GET /recommendations", menu, json.getTypeFactory().constructType(new TypeReference<List<ProductDTO>>() {})),
+                new Payload("GET /products/{id}", detail, json.getTypeFactory().constructType(ProductDetailResponse.class)),
+                new Payload("GET /images", images, json.getTypeFactory().constructType(new TypeReference<List<String>>() {})),
+                new Payload("POST /behavior", behavior, json.getTypeFactory().constructType(BehaviorMessage.class)));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.printf(Locale.ROOT, "%-22s %-6s %8s %12s %12s%n", "call", "codec", "bytes", "encode ns", "decode ns");
+        for (Payload payload : payloads) {
+            for (String codec : List.of("json", "smile")) {
+                ObjectMapper mapper = codec.equals("json") ? json : smile;
+                byte[] bytes = mapper.writeValueAsBytes(payload.value());
+
+                // 预热, 让 JIT 编译完成
+                run(mapper, payload, bytes, iterations / 4);
+
+                long encodeStart = threads.getCurrentThreadCpuTime();
+                encode(mapper, payload, iterations);
+                long encodeNanos = threads.getCurrentThreadCpuTime() - encodeStart;
+
+                long decodeStart = threads.getCurrentThreadCpuTime();
+                decode(mapper, payload, bytes, iterations);
+                long decodeNanos = threads.getCurrentThreadCpuTime() - decodeStart;
+
+                System.out.printf(Locale.ROOT, "%-22s %-6s %8d %12.0f %12.0f%n", payload.call(), codec, bytes.length,
+                        (double) encodeNanos / iterations, (double) decodeNanos / iterations);
+            }
+        }
+    }
+
+    private static void run(ObjectMapper mapper, Payload payload, byte[] bytes, int iterations) throws Exception {
+        encode(mapper, payload, iterations);
+        decode(mapper, payload, bytes, iterations);
+    }
+
+    private static long encode(ObjectMapper mapper, Payload payload, int iterations) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.writeValueAsBytes(payload.value()).length;
+        }
+        return sink;
+    }
+
+    private static long decode(ObjectMapper mapper, Payload payload, byte[] bytes, int iterations) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            Object value = mapper.readValue(bytes, payload.type());
+            sink += value.hashCode();
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,93 @@
+package springbackend.LoadTest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 脚本化负载 - 每个负载由若干带权重的场景组成, 场景是同一用户的一串请求
+ */
+public enum Workload {
+
+    /**
+     * 浏览为主: 大量菜单和详情, 少量搜索和加购
+     */
+    BROWSE_HEAVY(0.0,
+            new Scenario(60, Endpoint.MENU, Endpoint.PRODUCT_DETAIL, Endpoint.PRODUCT_DETAIL),
+            new Scenario(25, Endpoint.SEARCH, Endpoint.PRODUCT_DETAIL),
+            new Scenario(15, Endpoint.PRODUCT_DETAIL, Endpoint.ADD_TO_CART, Endpoint.VIEW_CART)),
+
+    /**
+     * 秒杀: 90% 的流量集中在少数热门商品上, 加购和下单比例高
+     */
+    FLASH_SALE(0.9,
+            new Scenario(40, Endpoint.PRODUCT_DETAIL, Endpoint.PRODUCT_DETAIL),
+            new Scenario(40, Endpoint.PRODUCT_DETAIL, Endpoint.ADD_TO_CART),
+            new Scenario(20, Endpoint.ADD_TO_CART, Endpoint.PURCHASE)),
+
+    /**
+     * 结账高峰: 以完整的 加购 -> 查看购物车 -> 下单 流程为主
+     */
+    CHECKOUT_RUSH(0.2,
+            new Scenario(20, Endpoint.MENU, Endpoint.PRODUCT_DETAIL),
+            new Scenario(80, Endpoint.PRODUCT_DETAIL, Endpoint.ADD_TO_CART, Endpoint.ADD_TO_CART,
+                    Endpoint.VIEW_CART, Endpoint.PURCHASE));
+
+    static final int HOT_PRODUCTS = 10;
+
+    private final double hotFraction;
+    private final Scenario[] scenarios;
+    private final int totalWeight;
+
+    Workload(double hotFraction, Scenario... scenarios) {
+        this.hotFraction = hotFraction;
+        this.scenarios = scenarios;
+        int sum = 0;
+        for (Scenario scenario : scenarios) {
+            sum += scenario.weight();
+        }
+        this.totalWeight = sum;
+    }
+
+    Scenario nextScenario() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            pick -= scenario.weight();
+            if (pick < 0) {
+                return scenario;
+            }
+        }
+        return scenarios[scenarios.length - 1];
+    }
+
+    long nextProductId(int catalogSize) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < hotFraction) {
+            return random.nextLong(1, HOT_PRODUCTS + 1);
+        }
+        return random.nextLong(1, catalogSize + 1);
+    }
+
+    record Scenario(int weight, Endpoint... steps) {
+    }
+
+    /**
+     * 被压测的接口
+     */
+    enum Endpoint {
+        MENU("GET /api/menu"),
+        PRODUCT_DETAIL("GET /api/products/{id}"),
+        SEARCH("GET /api/products/search"),
+        ADD_TO_CART("POST /api/cart/add"),
+        VIEW_CART("GET /api/cart"),
+        PURCHASE("POST /api/cart/purchase");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        String label() {
+            return label;
+        }
+    }
+}
@@ -1,20 +1,33 @@
 package springbackend.Config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 
 @Configuration
 public class RestTemplateConfig {
 
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     @Value("${recommendation.engine.http2:false}") boolean http2,
+                                     @Value("${recommendation.engine.timeout:5000}") long timeoutMillis) {
+        if (http2) {
+            // JDK HttpClient: 与引擎之间复用一条 HTTP/2 连接并发多路请求 (引擎不支持时自动回退 HTTP/1.1)
+            builder = builder.requestFactoryBuilder(ClientHttpRequestFactoryBuilder.jdk()
+                    .withHttpClientCustomizer(client -> client.version(HttpClient.Version.HTTP_2)));
+        }
+        // 静态超时只是上限; 请求内的调用由 EngineClient 按请求截止时间 (Deadline) 的剩余时间等待并取消
         return builder
-                .connectTimeout(Duration.ofSeconds(5))     // Spring Boot 3.x 使用 connectTimeout
-                .readTimeout(Duration.ofSeconds(5))        // Spring Boot 3.x 使用 readTimeout
+                .connectTimeout(Duration.ofMillis(timeoutMillis))     // Spring Boot 3.x 使用 connectTimeout
+                .readTimeout(Duration.ofMillis(timeoutMillis))        // Spring Boot 3.x 使用 readTimeout
+                .additionalMessageConverters(new MappingJackson2SmileHttpMessageConverter())
                 .build();
     }
-}
\ No newline at end of file
+}
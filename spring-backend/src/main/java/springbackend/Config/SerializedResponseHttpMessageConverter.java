@@ -0,0 +1,45 @@
+package springbackend.Config;
+
+import springbackend.DTO.SerializedResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * 直接写出预序列化的 JSON 字节, 不经过 Jackson
+ */
+public class SerializedResponseHttpMessageConverter extends AbstractHttpMessageConverter<SerializedResponse> {
+
+    public SerializedResponseHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SerializedResponse.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected SerializedResponse readInternal(Class<? extends SerializedResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("SerializedResponse is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(SerializedResponse response, MediaType contentType) {
+        return (long) response.body().length;
+    }
+
+    @Override
+    protected void writeInternal(SerializedResponse response, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(response.body());
+    }
+}
@@ -0,0 +1,41 @@
+package springbackend.Config;
+
+import springbackend.Interceptor.AdmissionControlInterceptor;
+import springbackend.Interceptor.DeadlineInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Web MVC 配置 - 注册拦截器和消息转换器
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+    private final DeadlineInterceptor deadlineInterceptor;
+
+    public WebMvcConfig(AdmissionControlInterceptor admissionControlInterceptor,
+                        DeadlineInterceptor deadlineInterceptor) {
+        this.admissionControlInterceptor = admissionControlInterceptor;
+        this.deadlineInterceptor = deadlineInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor)
+                .addPathPatterns("/api/**");
+        // 准入之后再开始计时, 被拒绝的请求不创建截止时间
+        registry.addInterceptor(deadlineInterceptor)
+                .addPathPatterns("/api/**");
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // 预序列化的响应直接写出字节, 放在 Jackson 之前
+        converters.add(0, new SerializedResponseHttpMessageConverter());
+    }
+}
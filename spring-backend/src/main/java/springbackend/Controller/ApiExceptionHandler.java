@@ -0,0 +1,25 @@
+package springbackend.Controller;
+
+import springbackend.DTO.ApiResponse;
+import springbackend.Service.DeadlineExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * 全局异常处理
+ * 超过请求截止时间返回 504, 准入控制按 5xx 计为下游失败并收缩并发上限
+ */
+@RestControllerAdvice
+@Slf4j
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public ApiResponse<Void> handleDeadlineExceeded(DeadlineExceededException e) {
+        log.warn("Request deadline exceeded: {}", e.getMessage());
+        return ApiResponse.error("Request timed out: " + e.getMessage());
+    }
+}
@@ -2,8 +2,11 @@ package springbackend.Controller;
 
 import springbackend.DTO.AddToCartRequest;
 import springbackend.DTO.ApiResponse;
+import springbackend.DTO.OrderResponse;
 import springbackend.Entity.CartItem;
 import springbackend.Service.CartService;
+import springbackend.Service.DeadlineExceededException;
+import springbackend.Service.OrderService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +15,7 @@ import java.util.List;
 
 /**
  * 购物车控制器
+ * 超过请求截止时间的异常交给 ApiExceptionHandler (504)
  */
 @RestController
 @RequestMapping("/api/cart")
@@ -20,9 +24,11 @@ import java.util.List;
 public class CartController {
 
     private final CartService cartService;
+    private final OrderService orderService;
 
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, OrderService orderService) {
         this.cartService = cartService;
+        this.orderService = orderService;
     }
 
     /**
@@ -42,6 +48,8 @@ public class CartController {
         try {
             cartService.addToCart(userId, request.getProductId());
             return ApiResponse.success("Product added to cart successfully");
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error adding product to cart", e);
             return ApiResponse.error("Failed to add product to cart: " + e.getMessage());
@@ -62,6 +70,8 @@ public class CartController {
         try {
             List<CartItem> cartItems = cartService.getCart(userId);
             return ApiResponse.success(cartItems);
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting cart", e);
             return ApiResponse.error("Failed to get cart: " + e.getMessage());
@@ -69,25 +79,55 @@ public class CartController {
     }
 
     /**
-     * 购买 - 清空购物车
+     * 购买 - 清空购物车并生成订单 (异步处理)
      * POST /api/cart/purchase
      * Header: Authorization: Bearer <token>
+     * Header: Idempotency-Key: <客户端生成, 重试时保持不变>
+     * 返回订单号, 通过 GET /api/cart/orders/{orderId} 查询处理状态
      */
     @PostMapping("/purchase")
-    public ApiResponse<String> purchase(
+    public ApiResponse<OrderResponse> purchase(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestHeader(value = "X-User-Id", required = false, defaultValue = "1") Long userId) {
 
         log.info("Processing purchase for user {}", userId);
 
         try {
-            cartService.purchase(userId);
-            return ApiResponse.success("Purchase completed successfully");
+            OrderResponse order = cartService.purchase(userId, idempotencyKey);
+            return ApiResponse.success("Purchase accepted", order);
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error processing purchase", e);
             return ApiResponse.error("Failed to complete purchase: " + e.getMessage());
         }
     }
 
+    /**
+     * 查询订单状态
+     * GET /api/cart/orders/{orderId}
+     */
+    @GetMapping("/orders/{orderId}")
+    public ApiResponse<OrderResponse> getOrder(
+            @PathVariable String orderId,
+            @RequestHeader(value = "X-User-Id", required = false, defaultValue = "1") Long userId) {
+
+        log.info("Getting order {} for user {}", orderId, userId);
+
+        try {
+            OrderResponse order = orderService.getOrder(userId, orderId);
+            if (order == null) {
+                return ApiResponse.error("Order not found");
+            }
+            return ApiResponse.success(order);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error getting order", e);
+            return ApiResponse.error("Failed to get order: " + e.getMessage());
+        }
+    }
+
     /**
      * 更新购物车商品数量
      * PUT /api/cart/{productId}
@@ -104,6 +144,8 @@ public class CartController {
         try {
             cartService.updateQuantity(userId, productId, quantity);
             return ApiResponse.success("Cart updated successfully");
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error updating cart", e);
             return ApiResponse.error("Failed to update cart: " + e.getMessage());
@@ -124,6 +166,8 @@ public class CartController {
         try {
             cartService.removeFromCart(userId, productId);
             return ApiResponse.success("Product removed from cart successfully");
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error removing product from cart", e);
             return ApiResponse.error("Failed to remove product: " + e.getMessage());
@@ -143,6 +187,8 @@ public class CartController {
         try {
             cartService.clearCart(userId);
             return ApiResponse.success("Cart cleared successfully");
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error clearing cart", e);
             return ApiResponse.error("Failed to clear cart: " + e.getMessage());
@@ -3,8 +3,11 @@ package springbackend.Controller;
 import springbackend.DTO.ApiResponse;
 import springbackend.DTO.ProductDTO;
 import springbackend.DTO.MenuResponse;
+import springbackend.DTO.SerializedResponse;
 import springbackend.Service.ProductService;
+import springbackend.Service.ResponseCacheService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -18,19 +21,24 @@ import java.util.List;
 @Slf4j
 public class MenuController {
 
+    private static final String MOCK_MENU_CACHE_KEY = "menu:mock";
+
     private final ProductService productService;
+    private final ResponseCacheService responseCacheService;
 
-    public MenuController(ProductService productService) {
+    public MenuController(ProductService productService, ResponseCacheService responseCacheService) {
         this.productService = productService;
+        this.responseCacheService = responseCacheService;
     }
 
     /**
      * 获取推荐菜单 (9个产品)
      * GET /api/menu
      * Header: Authorization: Bearer <token>
+     * 个性化菜单每个用户不同, 正常序列化; 只有所有用户相同的降级菜单返回缓存的 JSON 字节 (SerializedResponse)
      */
     @GetMapping
-    public ApiResponse<MenuResponse> getMenu(
+    public ResponseEntity<?> getMenu(
             // TODO: 从 JWT token 中获取 userId
             @RequestHeader(value = "X-User-Id", required = false, defaultValue = "1") Long userId) {
 
@@ -39,15 +47,27 @@ public class MenuController {
         try {
             List<ProductDTO> recommendations = productService.getMenuRecommendations(userId);
 
-            MenuResponse response = MenuResponse.builder()
-                    .products(recommendations)
-                    .message("Successfully retrieved recommendations")
-                    .build();
+            // 降级菜单对所有用户相同, 使用缓存的序列化结果
+            if (productService.isMockMenu(recommendations)) {
+                ResponseCacheService.Entry cached = responseCacheService.get(MOCK_MENU_CACHE_KEY);
+                SerializedResponse body = cached != null
+                        ? cached.response()
+                        : responseCacheService.put(MOCK_MENU_CACHE_KEY, menuResponse(recommendations), null);
+                return ResponseEntity.ok(body);
+            }
 
-            return ApiResponse.success(response);
+            return ResponseEntity.ok(menuResponse(recommendations));
         } catch (Exception e) {
             log.error("Error getting menu recommendations", e);
-            return ApiResponse.error("Failed to get recommendations: " + e.getMessage());
+            return ResponseEntity.ok(ApiResponse.error("Failed to get recommendations: " + e.getMessage()));
         }
     }
+
+    private static ApiResponse<MenuResponse> menuResponse(List<ProductDTO> recommendations) {
+        MenuResponse response = MenuResponse.builder()
+                .products(recommendations)
+                .message("Successfully retrieved recommendations")
+                .build();
+        return ApiResponse.success(response);
+    }
 }
\ No newline at end of file
@@ -2,8 +2,13 @@ package springbackend.Controller;
 
 import springbackend.DTO.ApiResponse;
 import springbackend.DTO.ProductDetailResponse;
+import springbackend.DTO.ProductSearchResponse;
+import springbackend.DTO.SerializedResponse;
+import springbackend.Service.DeadlineExceededException;
+import springbackend.Service.ProductSearchService;
 import springbackend.Service.ProductService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -16,9 +21,33 @@ import org.springframework.web.bind.annotation.*;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductSearchService productSearchService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductSearchService productSearchService) {
         this.productService = productService;
+        this.productSearchService = productSearchService;
+    }
+
+    /**
+     * 搜索产品 / 类目浏览 (进程内倒排索引, 不访问推荐引擎)
+     * GET /api/products/search?q=wireless&category=Electronics&offset=0&limit=20
+     * q 为空时返回 category 下的全部产品
+     */
+    @GetMapping("/search")
+    public ApiResponse<ProductSearchResponse> search(
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        log.info("Searching products: q={}, category={}, offset={}, limit={}", query, category, offset, limit);
+
+        try {
+            return ApiResponse.success(productSearchService.search(query, category, offset, limit));
+        } catch (Exception e) {
+            log.error("Error searching products", e);
+            return ApiResponse.error("Failed to search products: " + e.getMessage());
+        }
     }
 
     /**
@@ -29,7 +58,7 @@ public class ProductController {
      * 对应前端路由: /product/:id
      */
     @GetMapping("/{id}")
-    public ApiResponse<ProductDetailResponse> getProductDetail(
+    public ResponseEntity<?> getProductDetail(
             @PathVariable Long id,
             // TODO: 从 JWT token 中获取 userId
             @RequestHeader(value = "X-User-Id", required = false, defaultValue = "1") Long userId) {
@@ -37,11 +66,24 @@ public class ProductController {
         log.info("Getting product detail for productId: {}, userId: {}", id, userId);
 
         try {
-            ProductDetailResponse productDetail = productService.getProductDetail(id, userId);
-            return ApiResponse.success(productDetail);
+            // 详情对所有用户相同, 命中缓存时直接写出预序列化的 JSON
+            SerializedResponse cached = productService.getCachedProductDetail(id, userId);
+            if (cached != null) {
+                return ResponseEntity.ok(cached);
+            }
+
+            ApiResponse<ProductDetailResponse> response = ApiResponse.success(productService.getProductDetail(id, userId));
+            if (response.getData().isFallback()) {
+                // 降级数据不缓存, 引擎恢复后立即返回真实数据
+                return ResponseEntity.ok(response);
+            }
+            return ResponseEntity.ok(productService.cacheProductDetail(response));
+        } catch (DeadlineExceededException e) {
+            // 交给 ApiExceptionHandler 返回 504
+            throw e;
         } catch (Exception e) {
             log.error("Error getting product detail", e);
-            return ApiResponse.error("Failed to get product detail: " + e.getMessage());
+            return ResponseEntity.ok(ApiResponse.error("Failed to get product detail: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+}
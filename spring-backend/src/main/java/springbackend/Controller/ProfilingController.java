@@ -0,0 +1,131 @@
+package springbackend.Controller;
+
+import springbackend.DTO.ApiResponse;
+import springbackend.DTO.RecordingStatusResponse;
+import springbackend.Service.ProfilingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * 性能分析管理接口 - 按需开启 / 停止 JFR 录制, 下载录制文件
+ * 需要 Header: X-Admin-Token (与 profiling.admin-token 一致), token 错误或未配置时所有接口返回 403
+ */
+@RestController
+@RequestMapping("/api/admin/profiling")
+@Slf4j
+public class ProfilingController {
+
+    private final ProfilingService profilingService;
+    private final String adminToken;
+
+    public ProfilingController(ProfilingService profilingService,
+                               @Value("${profiling.admin-token:}") String adminToken) {
+        this.profilingService = profilingService;
+        this.adminToken = adminToken;
+    }
+
+    /**
+     * 开始录制
+     * POST /api/admin/profiling/start?maxAgeMinutes=10&maxSizeMb=100 (不超过 profiling.max-age-minutes / max-size-mb)
+     */
+    @PostMapping("/start")
+    public ResponseEntity<ApiResponse<RecordingStatusResponse>> start(
+            @RequestParam(required = false) Long maxAgeMinutes,
+            @RequestParam(required = false) Long maxSizeMb,
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(profilingService.start(maxAgeMinutes, maxSizeMb)));
+        } catch (Exception e) {
+            log.error("Error starting JFR recording", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.error("Failed to start recording: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 停止录制
+     * POST /api/admin/profiling/stop
+     */
+    @PostMapping("/stop")
+    public ResponseEntity<ApiResponse<RecordingStatusResponse>> stop(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(ApiResponse.success(profilingService.stop()));
+    }
+
+    /**
+     * 录制状态
+     * GET /api/admin/profiling
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<RecordingStatusResponse>> status(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(ApiResponse.success(profilingService.status()));
+    }
+
+    /**
+     * 下载当前录制内容 (录制继续进行), 用 JDK Mission Control 或 jfr 命令打开
+     * GET /api/admin/profiling/dump
+     */
+    @GetMapping("/dump")
+    public ResponseEntity<StreamingResponseBody> dump(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+
+        if (!authorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            Path file = profilingService.dump();
+            StreamingResponseBody body = out -> {
+                try {
+                    Files.copy(file, out);
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(Files.size(file))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                    .body(body);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Error dumping JFR recording", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private static <T> ResponseEntity<ApiResponse<T>> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("Forbidden"));
+    }
+
+    private boolean authorized(String token) {
+        if (adminToken.isBlank() || token == null) {
+            return false;
+        }
+        // 常量时间比较
+        return MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
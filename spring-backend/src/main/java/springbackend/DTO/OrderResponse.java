@@ -0,0 +1,24 @@
+package springbackend.DTO;
+
+import springbackend.Entity.CartItem;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 订单状态响应 - 下单后通过 orderId 轮询
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderResponse {
+    private String orderId;
+    private String status;           // "PENDING", "PROCESSING", "COMPLETED"
+    private List<CartItem> items;    // 下单时的购物车快照 (下单确认时不返回)
+    private Long createdAt;          // epoch millis
+    private Long completedAt;
+}
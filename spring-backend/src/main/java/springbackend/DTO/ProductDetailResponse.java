@@ -1,5 +1,6 @@
 package springbackend.DTO;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,4 +23,8 @@ public class ProductDetailResponse {
     private Double price;
     private List<String> images;          // 主图片列表
     private List<String> relatedImages;   // 推荐引擎返回的相关图片(9张)
+    private List<ProductDTO> relatedProducts; // 本地共现索引计算的相关商品
+
+    @JsonIgnore
+    private boolean fallback;             // 引擎不可用时的 Mock 数据, 不缓存
 }
@@ -0,0 +1,22 @@
+package springbackend.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 产品搜索响应 - 结果分页 + 类目分面
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResponse {
+    private List<ProductDTO> products;     // 当前页结果
+    private int total;                     // 命中总数
+    private Map<String, Integer> categories; // 类目 -> 命中数 (不受 category 过滤影响)
+}
@@ -0,0 +1,22 @@
+package springbackend.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * JFR 录制状态
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecordingStatusResponse {
+    private boolean running;
+    private String settings;         // JFR 配置: "default" (约 1% 开销) 或 "profile"
+    private Long startedAt;          // epoch millis
+    private Long maxAgeSeconds;      // 环形缓冲只保留最近这段时间
+    private Long maxSizeBytes;
+    private Long sizeBytes;          // 当前已写入磁盘的大小
+}
@@ -0,0 +1,7 @@
+package springbackend.DTO;
+
+/**
+ * 已序列化好的 JSON 响应体 (UTF-8), 由 SerializedResponseHttpMessageConverter 原样写出
+ */
+public record SerializedResponse(byte[] body) {
+}
@@ -0,0 +1,149 @@
+package springbackend.Interceptor;
+
+import springbackend.DTO.ApiResponse;
+import springbackend.DTO.MenuResponse;
+import springbackend.Service.AdmissionControlService;
+import springbackend.Service.AdmissionControlService.Decision;
+import springbackend.Service.ProductService;
+import springbackend.Service.RequestPriority;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 准入控制拦截器
+ * 按路由判定优先级, 超出并发上限时快速返回 429 (菜单请求返回缓存菜单)
+ * 匿名请求按客户端地址 (getRemoteAddr) 限速; 部署在反向代理之后时需开启 server.forward-headers-strategy
+ */
+@Component
+@Slf4j
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".start";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final AdmissionControlService admissionControlService;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    // 429 响应体是固定的, 启动时序列化一次, 过载时不再消耗 CPU
+    private final byte[] overloadBody;
+    private final byte[] userRateBody;
+
+    public AdmissionControlInterceptor(AdmissionControlService admissionControlService,
+                                       ProductService productService,
+                                       ObjectMapper objectMapper) throws JsonProcessingException {
+        this.admissionControlService = admissionControlService;
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.overloadBody = objectMapper.writeValueAsBytes(ApiResponse.error("Server is busy, please retry later"));
+        this.userRateBody = objectMapper.writeValueAsBytes(
+                ApiResponse.error("Too many requests from this user, please retry later"));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        RequestPriority priority = classify(request);
+        if (priority == null || !admissionControlService.isEnabled()) {
+            return true;
+        }
+
+        Long userId = resolveUserId(request);
+        Decision decision = admissionControlService.tryAcquire(priority, userId, request.getRemoteAddr());
+        if (decision == Decision.ACCEPTED) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            return true;
+        }
+
+        log.warn("Request rejected ({}): {} {} priority={} user={}",
+                decision, request.getMethod(), request.getRequestURI(), priority, userId);
+
+        // 菜单请求降级: 返回该用户自己的缓存菜单或非个性化的降级菜单, 不占用引擎容量
+        if (priority == RequestPriority.MENU) {
+            MenuResponse menu = MenuResponse.builder()
+                    .products(productService.getCachedMenu(admissionControlService.isAnonymous(userId) ? null : userId))
+                    .message("Degraded: serving cached recommendations")
+                    .build();
+            writeJson(response, HttpStatus.OK, ApiResponse.success(menu));
+            return false;
+        }
+
+        response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        byte[] body = decision == Decision.REJECTED_USER_RATE ? userRateBody : overloadBody;
+        writeBytes(response, HttpStatus.TOO_MANY_REQUESTS, body);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start instanceof Long startNanos) {
+            // 控制器吞掉异常并返回 200 (ApiResponse.error / 降级数据), 下游失败通过请求属性传递
+            boolean failed = ex != null || response.getStatus() >= 500
+                    || request.getAttribute(AdmissionControlService.DOWNSTREAM_FAILED_ATTRIBUTE) != null;
+            admissionControlService.release(System.nanoTime() - startNanos, failed);
+        }
+    }
+
+    /**
+     * 路由 -> 优先级, 返回 null 表示不受准入控制
+     */
+    static RequestPriority classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+
+        if ("OPTIONS".equals(method)) {
+            return null;
+        }
+        if (path.startsWith("/api/cart")) {
+            if ("POST".equals(method) && path.equals("/api/cart/purchase")) {
+                return RequestPriority.PURCHASE;
+            }
+            // 查看购物车与产品详情同级
+            return "GET".equals(method) ? RequestPriority.PRODUCT_DETAIL : RequestPriority.CART_MUTATION;
+        }
+        if (path.startsWith("/api/products")) {
+            return RequestPriority.PRODUCT_DETAIL;
+        }
+        if (path.startsWith("/api/menu")) {
+            return RequestPriority.MENU;
+        }
+        return null;
+    }
+
+    /**
+     * 未带或无效的 X-User-Id 返回 null (匿名, 按客户端地址限速)
+     */
+    private Long resolveUserId(HttpServletRequest request) {
+        // TODO: 从 JWT token 中获取 userId
+        String header = request.getHeader("X-User-Id");
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(header);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void writeJson(HttpServletResponse response, HttpStatus status, Object body) throws IOException {
+        writeBytes(response, status, objectMapper.writeValueAsBytes(body));
+    }
+
+    private void writeBytes(HttpServletResponse response, HttpStatus status, byte[] body) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,75 @@
+package springbackend.Interceptor;
+
+import springbackend.Service.Deadline;
+import springbackend.Service.RequestPriority;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 请求截止时间拦截器
+ * 按路由取时间预算, 客户端通过 X-Request-Timeout-Ms 传入更短的剩余时间时以客户端为准,
+ * 在进入 Controller 前设置到线程上下文, 请求结束后清除
+ */
+@Component
+@Slf4j
+public class DeadlineInterceptor implements HandlerInterceptor {
+
+    private final boolean enabled;
+    private final Map<RequestPriority, Long> budgets = new EnumMap<>(RequestPriority.class);
+
+    public DeadlineInterceptor(@Value("${deadline.enabled:true}") boolean enabled,
+                               @Value("${deadline.budget-ms.purchase:5000}") long purchaseBudget,
+                               @Value("${deadline.budget-ms.cart-mutation:3000}") long cartMutationBudget,
+                               @Value("${deadline.budget-ms.product-detail:2000}") long productDetailBudget,
+                               @Value("${deadline.budget-ms.menu:2000}") long menuBudget) {
+        this.enabled = enabled;
+        budgets.put(RequestPriority.PURCHASE, purchaseBudget);
+        budgets.put(RequestPriority.CART_MUTATION, cartMutationBudget);
+        budgets.put(RequestPriority.PRODUCT_DETAIL, productDetailBudget);
+        budgets.put(RequestPriority.MENU, menuBudget);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestPriority priority = AdmissionControlInterceptor.classify(request);
+        if (!enabled || priority == null) {
+            return true;
+        }
+
+        long budget = budgets.get(priority);
+        Long clientBudget = parseClientBudget(request.getHeader(Deadline.HEADER));
+        if (clientBudget != null && clientBudget < budget) {
+            budget = clientBudget;
+        }
+        Deadline.set(Deadline.after(budget));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Deadline.clear();
+    }
+
+    /**
+     * 客户端只能缩短时间预算, 无效值忽略
+     */
+    private Long parseClientBudget(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(header.trim());
+            return millis >= 0 ? millis : null;
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring invalid {} header: {}", Deadline.HEADER, header);
+            return null;
+        }
+    }
+}
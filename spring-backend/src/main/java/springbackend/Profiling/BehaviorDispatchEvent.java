@@ -0,0 +1,49 @@
+package springbackend.Profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR 事件 - 一次用户行为发送 (本地共现索引 + 推荐引擎)
+ */
+@Name("springbackend.BehaviorDispatch")
+@Label("Behavior Dispatch")
+@Category({"Spring Backend", "Recommendation Engine"})
+@StackTrace(false)
+public class BehaviorDispatchEvent extends Event {
+
+    @Label("Action")
+    String action;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Product Id")
+    long productId;
+
+    @Label("Delivered")
+    boolean delivered;
+
+    @Label("Error")
+    String error;
+
+    public static BehaviorDispatchEvent start(String action, Long userId, Long productId) {
+        BehaviorDispatchEvent event = new BehaviorDispatchEvent();
+        event.action = action;
+        event.userId = userId != null ? userId : 0;
+        event.productId = productId != null ? productId : 0;
+        event.begin();
+        return event;
+    }
+
+    public void delivered() {
+        delivered = true;
+    }
+
+    public void failed(Exception e) {
+        error = e.getClass().getSimpleName();
+    }
+}
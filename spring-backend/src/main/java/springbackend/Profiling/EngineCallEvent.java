@@ -0,0 +1,65 @@
+package springbackend.Profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR 事件 - 一次 RecommendEngineService 调用 (包括读取目录快照和降级)
+ * 没有开启录制时 commit 几乎没有开销
+ */
+@Name("springbackend.EngineCall")
+@Label("Recommendation Engine Call")
+@Category({"Spring Backend", "Recommendation Engine"})
+@StackTrace(false)
+public class EngineCallEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Product Id")
+    long productId;
+
+    @Label("Source")
+    @Description("engine, snapshot or mock")
+    String source;
+
+    @Label("Fallback")
+    boolean fallback;
+
+    @Label("Error")
+    String error;
+
+    public static EngineCallEvent start(String operation, Long userId, Long productId) {
+        EngineCallEvent event = new EngineCallEvent();
+        event.operation = operation;
+        event.userId = userId != null ? userId : 0;
+        event.productId = productId != null ? productId : 0;
+        event.source = "engine";
+        event.begin();
+        return event;
+    }
+
+    public void fromSnapshot() {
+        source = "snapshot";
+    }
+
+    /**
+     * 引擎调用失败, 返回降级数据
+     */
+    public void fallback(Exception e) {
+        source = "mock";
+        fallback = true;
+        error = e.getClass().getSimpleName();
+    }
+
+    public void failed(Exception e) {
+        error = e.getClass().getSimpleName();
+    }
+}
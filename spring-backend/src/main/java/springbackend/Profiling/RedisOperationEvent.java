@@ -0,0 +1,46 @@
+package springbackend.Profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR 事件 - CartService 的一次 Redis 操作
+ */
+@Name("springbackend.RedisOperation")
+@Label("Cart Redis Operation")
+@Category({"Spring Backend", "Redis"})
+@StackTrace(false)
+public class RedisOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    String key;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Product Id")
+    long productId;
+
+    @Label("Error")
+    String error;
+
+    public static RedisOperationEvent start(String operation, String key, Long userId, Long productId) {
+        RedisOperationEvent event = new RedisOperationEvent();
+        event.operation = operation;
+        event.key = key;
+        event.userId = userId != null ? userId : 0;
+        event.productId = productId != null ? productId : 0;
+        event.begin();
+        return event;
+    }
+
+    public void failed(Exception e) {
+        error = e.getClass().getSimpleName();
+    }
+}
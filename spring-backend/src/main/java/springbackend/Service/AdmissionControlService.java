@@ -0,0 +1,273 @@
+package springbackend.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 准入控制服务
+ * 1. 自适应并发上限 (基于延迟梯度, 延迟升高时收缩, 空闲时缓慢扩张)
+ * 2. 按优先级分配并发份额 (PURCHASE > CART_MUTATION > PRODUCT_DETAIL > MENU)
+ * 3. 每个用户一个令牌桶, 防止单个用户刷接口; 已补满的桶与新桶等价, 定期清理
+ *    匿名请求 (未带用户 id, 或为 anonymous-ids 中的默认用户) 按客户端地址分桶, 不共用一个桶
+ * 4. 下游失败 (引擎降级 / Redis 出错) 由 recordDownstreamFailure 标记在请求上, 释放许可时乘性减小上限
+ *    每个 RTT 窗口最多减小一次; 比基线延迟快的失败 (快速返回的降级数据) 不视为过载
+ */
+@Service
+@Slf4j
+public class AdmissionControlService {
+
+    /**
+     * 准入结果
+     */
+    public enum Decision {
+        ACCEPTED,
+        REJECTED_OVERLOAD,   // 全局并发已满
+        REJECTED_USER_RATE   // 用户令牌桶已空
+    }
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_DECAY = 0.01;
+    private static final double ERROR_BACKOFF = 0.9;
+    private static final int MAX_TRACKED_USERS = 100_000;
+
+    /**
+     * 请求属性: 本次请求的下游调用失败过 (控制器仍返回 200 + ApiResponse.error 或降级数据)
+     */
+    public static final String DOWNSTREAM_FAILED_ATTRIBUTE = AdmissionControlService.class.getName() + ".downstreamFailed";
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int userBucketCapacity;
+    private final double userRefillPerSecond;
+    private final Set<Long> anonymousUserIds;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    // 键: 已识别用户的 id (Long) 或匿名请求的客户端地址 (String)
+    private final ConcurrentHashMap<Object, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    // 跟踪的用户数超过上限时, 新用户共用一个桶 (不影响已跟踪用户的剩余令牌)
+    private final TokenBucket overflowBucket;
+
+    // 以下状态只在 onSample 的同步块中修改
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long lastBackoffNanos;
+
+    public AdmissionControlService(
+            @Value("${admission.enabled:true}") boolean enabled,
+            @Value("${admission.limit.initial:64}") int initialLimit,
+            @Value("${admission.limit.min:8}") int minLimit,
+            @Value("${admission.limit.max:512}") int maxLimit,
+            @Value("${admission.user.capacity:20}") int userBucketCapacity,
+            @Value("${admission.user.refill-per-second:10}") double userRefillPerSecond,
+            @Value("${admission.user.anonymous-ids:0,1}") Set<Long> anonymousUserIds) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.userBucketCapacity = userBucketCapacity;
+        this.userRefillPerSecond = userRefillPerSecond;
+        this.anonymousUserIds = Set.copyOf(anonymousUserIds);
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.overflowBucket = new TokenBucket(userBucketCapacity, userRefillPerSecond);
+    }
+
+    /**
+     * 标记当前请求的下游调用失败 (不在请求线程中时忽略)
+     */
+    public static void recordDownstreamFailure() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(DOWNSTREAM_FAILED_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 是否为匿名用户 (未带用户 id, 或前端未登录时的默认用户)
+     */
+    public boolean isAnonymous(Long userId) {
+        return userId == null || anonymousUserIds.contains(userId);
+    }
+
+    /**
+     * 尝试获取一个并发许可
+     * 返回 ACCEPTED 时调用方必须在请求结束后调用 release
+     * 匿名用户按 clientAddress 限速; 地址也为 null 时不限速
+     */
+    public Decision tryAcquire(RequestPriority priority, Long userId, String clientAddress) {
+        if (!enabled) {
+            return Decision.ACCEPTED;
+        }
+
+        // 1. 用户令牌桶 (下单不受用户限速, 避免结账被浏览流量挤掉)
+        Object bucketKey = isAnonymous(userId) ? clientAddress : userId;
+        if (priority != RequestPriority.PURCHASE && bucketKey != null && !bucketFor(bucketKey).tryConsume()) {
+            return Decision.REJECTED_USER_RATE;
+        }
+
+        // 2. 按优先级份额抢占全局并发
+        int allowed = priority.allowedInflight(limit);
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                log.debug("Shedding {} request: inflight={}, allowed={}, limit={}", priority, current, allowed, limit);
+                return Decision.REJECTED_OVERLOAD;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return Decision.ACCEPTED;
+            }
+        }
+    }
+
+    /**
+     * 释放许可并用本次请求的延迟更新并发上限
+     */
+    public void release(long rttNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        int inflightAtCompletion = inflight.getAndDecrement();
+        onSample(rttNanos, inflightAtCompletion, failed);
+    }
+
+    private synchronized void onSample(long rttNanos, int inflightAtCompletion, boolean failed) {
+        if (failed) {
+            onFailure(rttNanos);
+            return;
+        }
+        if (rttNanos <= 0) {
+            return;
+        }
+
+        // 长期基线延迟 (指数移动平均)
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos = longRttNanos * (1 - LONG_RTT_DECAY) + rttNanos * LONG_RTT_DECAY;
+        }
+
+        // 未用满上限时不扩张, 避免上限虚高
+        if (inflightAtCompletion < estimatedLimit / 2) {
+            return;
+        }
+
+        // 梯度 = 基线延迟 / 当前延迟, 延迟升高时 < 1
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 下游出错时乘性减小 (AIMD)
+     * 引擎故障时降级数据很快返回: 这些请求没有占用更多容量, 不收缩上限, 以免误伤只访问 Redis 的购物车请求
+     * 同一窗口 (约一个基线 RTT) 内的多个失败来自同一次过载, 只减小一次
+     */
+    private void onFailure(long rttNanos) {
+        if (longRttNanos > 0 && rttNanos <= longRttNanos) {
+            return;
+        }
+        long now = System.nanoTime();
+        long window = (long) Math.max(longRttNanos, rttNanos);
+        if (lastBackoffNanos != 0 && now - lastBackoffNanos < window) {
+            return;
+        }
+        lastBackoffNanos = now;
+        estimatedLimit = Math.max(minLimit, estimatedLimit * ERROR_BACKOFF);
+        limit = (int) estimatedLimit;
+    }
+
+    private TokenBucket bucketFor(Object key) {
+        TokenBucket bucket = userBuckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (userBuckets.size() >= MAX_TRACKED_USERS) {
+            // 不能整体清空 (会把所有用户的桶补满), 新用户暂时共用溢出桶, 等待定期清理
+            return overflowBucket;
+        }
+        return userBuckets.computeIfAbsent(key, k -> new TokenBucket(userBucketCapacity, userRefillPerSecond));
+    }
+
+    /**
+     * 清理已补满的令牌桶 - 补满的桶与新建的桶等价, 删除不会放宽任何用户的限制
+     */
+    @Scheduled(fixedDelayString = "${admission.user.eviction-interval-ms:5000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        int before = userBuckets.size();
+        userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        if (before >= MAX_TRACKED_USERS) {
+            log.warn("Tracked user buckets reached {}, evicted {} idle buckets", MAX_TRACKED_USERS, before - userBuckets.size());
+        }
+    }
+
+    int getTrackedUsers() {
+        return userBuckets.size();
+    }
+
+    /**
+     * 令牌桶 - 按时间惰性补充令牌
+     */
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized boolean tryConsume() {
+            long now = System.nanoTime();
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            if (now - lastRefillNanos > 0) {
+                tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package springbackend.Service;
 
 import springbackend.DTO.BehaviorMessage;
+import springbackend.DTO.OrderResponse;
 import springbackend.DTO.ProductDetailResponse;
 import springbackend.Entity.CartItem;
+import springbackend.Profiling.RedisOperationEvent;
 import lombok.extern.slf4j.Slf4j;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 购物车服务
+ * 每个方法在第一次 Redis 操作前检查请求截止时间, 已超时则不再执行 (避免写到一半)
+ * 读命令只等待请求剩余的时间 (RedisDeadlineExecutor); 写命令发送后等待确认, 写入成功后的
+ * 后续步骤 (续期, 加购行为) 不再受截止时间影响, 客户端不会因 504 重试一次已成功的写入
  */
 @Service
 @Slf4j
@@ -20,14 +30,27 @@ public class CartService {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final RecommendEngineService recommendEngineService;
+    private final OrderService orderService;
+    private final RedisDeadlineExecutor redisExecutor;
+    private final RedisSerializer<String> keySerializer;
+    private final RedisSerializer<String> hashKeySerializer;
+    private final RedisSerializer<Object> valueSerializer;
 
     private static final String CART_KEY_PREFIX = "cart:";
     private static final long CART_EXPIRATION_HOURS = 24;
 
+    @SuppressWarnings("unchecked")
     public CartService(RedisTemplate<String, Object> redisTemplate,
-                       RecommendEngineService recommendEngineService) {
+                       RecommendEngineService recommendEngineService,
+                       OrderService orderService,
+                       RedisDeadlineExecutor redisExecutor) {
         this.redisTemplate = redisTemplate;
         this.recommendEngineService = recommendEngineService;
+        this.orderService = orderService;
+        this.redisExecutor = redisExecutor;
+        this.keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        this.hashKeySerializer = (RedisSerializer<String>) redisTemplate.getHashKeySerializer();
+        this.valueSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
     }
 
     /**
@@ -45,13 +68,14 @@ public class CartService {
         String cartKey = CART_KEY_PREFIX + userId;
         String itemKey = "product:" + productId;
 
-        // 2. 检查购物车中是否已存在该产品
-        CartItem existingItem = (CartItem) redisTemplate.opsForHash().get(cartKey, itemKey);
+        // 2. 检查购物车中是否已存在该产品 (截止时间已过则不再写入购物车)
+        Deadline.checkCurrent("cart add");
+        CartItem existingItem = getItem(cartKey, itemKey, userId, productId);
 
         if (existingItem != null) {
             // 如果已存在，增加数量
             existingItem.setQuantity(existingItem.getQuantity() + 1);
-            redisTemplate.opsForHash().put(cartKey, itemKey, existingItem);
+            putItem(cartKey, itemKey, existingItem, userId, productId);
         } else {
             // 如果不存在，创建新的购物车项
             CartItem cartItem = CartItem.builder()
@@ -64,13 +88,13 @@ public class CartService {
                             : "")
                     .quantity(1)
                     .build();
-            redisTemplate.opsForHash().put(cartKey, itemKey, cartItem);
+            putItem(cartKey, itemKey, cartItem, userId, productId);
         }
 
         // 设置过期时间
-        redisTemplate.expire(cartKey, CART_EXPIRATION_HOURS, TimeUnit.HOURS);
+        touch(cartKey, userId, productId);
 
-        // 3. 发送加购行为给推荐引擎
+        // 3. 发送加购行为给推荐引擎 (写入已确认, 即使已过截止时间也发送)
         BehaviorMessage addToCartBehavior = BehaviorMessage.builder()
                 .productId(product.getId())
                 .title(product.getTitle())
@@ -90,12 +114,14 @@ public class CartService {
         log.info("Getting cart for user {}", userId);
 
         String cartKey = CART_KEY_PREFIX + userId;
-        List<Object> items = redisTemplate.opsForHash().values(cartKey);
+        Deadline.checkCurrent("cart get");
+        List<byte[]> items = read("HVALS", cartKey, userId, null,
+                commands -> commands.hvals(keySerializer.serialize(cartKey)));
 
         List<CartItem> cartItems = new ArrayList<>();
-        for (Object obj : items) {
-            if (obj instanceof CartItem) {
-                cartItems.add((CartItem) obj);
+        for (byte[] value : items) {
+            if (valueSerializer.deserialize(value) instanceof CartItem cartItem) {
+                cartItems.add(cartItem);
             }
         }
 
@@ -104,35 +130,19 @@ public class CartService {
     }
 
     /**
-     * 购买 - 清空购物车并发送购买行为
+     * 购买 - 购物车原子快照并清空, 生成订单后异步发送购买行为
+     * 一次 Redis 往返完成, 与购物车大小无关; 相同幂等键的重试返回同一订单
      */
-    public void purchase(Long userId) {
+    public OrderResponse purchase(Long userId, String idempotencyKey) {
         log.info("Processing purchase for user {}", userId);
 
-        // 获取购物车所有产品
-        List<CartItem> cartItems = getCart(userId);
-
-        if (cartItems.isEmpty()) {
-            throw new RuntimeException("Cart is empty");
-        }
-
-        // 发送每个产品的购买行为给推荐引擎
-        for (CartItem cartItem : cartItems) {
-            BehaviorMessage purchaseBehavior = BehaviorMessage.builder()
-                    .productId(cartItem.getProductId())
-                    .title(cartItem.getTitle())
-                    .category(cartItem.getCategory())
-                    .action("PURCHASE")
-                    .userId(userId)
-                    .build();
-            recommendEngineService.sendBehavior(purchaseBehavior);
-        }
-
-        // 清空购物车
         String cartKey = CART_KEY_PREFIX + userId;
-        redisTemplate.delete(cartKey);
+        Deadline.checkCurrent("cart purchase");
+        OrderResponse order = record("PLACE_ORDER", cartKey, userId, null,
+                () -> orderService.placeOrder(userId, cartKey, idempotencyKey));
 
-        log.info("Purchase completed and cart cleared for user {}", userId);
+        log.info("Purchase accepted as order {} for user {}", order.getOrderId(), userId);
+        return order;
     }
 
     /**
@@ -141,7 +151,8 @@ public class CartService {
     public void clearCart(Long userId) {
         log.info("Clearing cart for user {}", userId);
         String cartKey = CART_KEY_PREFIX + userId;
-        redisTemplate.delete(cartKey);
+        Deadline.checkCurrent("cart clear");
+        write("DEL", cartKey, userId, null, commands -> commands.del(keySerializer.serialize(cartKey)));
     }
 
     /**
@@ -153,17 +164,18 @@ public class CartService {
         String cartKey = CART_KEY_PREFIX + userId;
         String itemKey = "product:" + productId;
 
-        CartItem cartItem = (CartItem) redisTemplate.opsForHash().get(cartKey, itemKey);
+        Deadline.checkCurrent("cart update");
+        CartItem cartItem = getItem(cartKey, itemKey, userId, productId);
 
         if (cartItem != null) {
             if (quantity <= 0) {
                 // 数量为0或负数,删除该商品
-                redisTemplate.opsForHash().delete(cartKey, itemKey);
+                deleteItem(cartKey, itemKey, userId, productId);
             } else {
                 cartItem.setQuantity(quantity);
-                redisTemplate.opsForHash().put(cartKey, itemKey, cartItem);
+                putItem(cartKey, itemKey, cartItem, userId, productId);
             }
-            redisTemplate.expire(cartKey, CART_EXPIRATION_HOURS, TimeUnit.HOURS);
+            touch(cartKey, userId, productId);
         }
     }
 
@@ -176,6 +188,67 @@ public class CartService {
         String cartKey = CART_KEY_PREFIX + userId;
         String itemKey = "product:" + productId;
 
-        redisTemplate.opsForHash().delete(cartKey, itemKey);
+        Deadline.checkCurrent("cart remove");
+        deleteItem(cartKey, itemKey, userId, productId);
+    }
+
+    // ==================== Redis 命令 ====================
+
+    private CartItem getItem(String cartKey, String itemKey, Long userId, Long productId) {
+        byte[] value = read("HGET", cartKey, userId, productId,
+                commands -> commands.hget(keySerializer.serialize(cartKey), hashKeySerializer.serialize(itemKey)));
+        return (CartItem) valueSerializer.deserialize(value);
+    }
+
+    private void putItem(String cartKey, String itemKey, CartItem item, Long userId, Long productId) {
+        write("HSET", cartKey, userId, productId, commands -> commands.hset(
+                keySerializer.serialize(cartKey), hashKeySerializer.serialize(itemKey), valueSerializer.serialize(item)));
+    }
+
+    private void deleteItem(String cartKey, String itemKey, Long userId, Long productId) {
+        write("HDEL", cartKey, userId, productId,
+                commands -> commands.hdel(keySerializer.serialize(cartKey), hashKeySerializer.serialize(itemKey)));
+    }
+
+    /**
+     * 写入已确认后续期购物车
+     */
+    private void touch(String cartKey, Long userId, Long productId) {
+        record("EXPIRE", cartKey, userId, productId, () -> redisExecutor.writeAfterCommit(redisTemplate, "EXPIRE",
+                commands -> commands.expire(keySerializer.serialize(cartKey), TimeUnit.HOURS.toSeconds(CART_EXPIRATION_HOURS))));
+    }
+
+    /**
+     * 读命令, 只等待请求剩余的时间
+     */
+    private <T> T read(String operation, String key, Long userId, Long productId,
+                       Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        return record(operation, key, userId, productId,
+                () -> redisExecutor.read(redisTemplate, operation, command));
+    }
+
+    /**
+     * 写命令, 截止时间已过时不发送, 发送后等待确认
+     */
+    private <T> T write(String operation, String key, Long userId, Long productId,
+                        Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        return record(operation, key, userId, productId,
+                () -> redisExecutor.write(redisTemplate, operation, command));
+    }
+
+    /**
+     * 执行一次 Redis 操作并记录 JFR 事件 (没有开启录制时几乎没有开销)
+     */
+    private static <T> T record(String operation, String key, Long userId, Long productId, Supplier<T> command) {
+        RedisOperationEvent event = RedisOperationEvent.start(operation, key, userId, productId);
+        try {
+            return command.get();
+        } catch (RuntimeException e) {
+            event.failed(e);
+            AdmissionControlService.recordDownstreamFailure();
+            throw e;
+        } finally {
+            event.commit();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+package springbackend.Service;
+
+import springbackend.DTO.ProductDetailResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 只读的内存映射目录快照
+ * 文件全部通过 mmap 映射到堆外, 堆上只保留类目表, 商品数量再多也不会增加堆占用
+ *
+ * 文件格式 (大端):
+ *   0  int  MAGIC, int VERSION, int productCount, int categoryCount
+ *   16 long indexOffset, long dataOffset
+ *   32 类目表: categoryCount 个字符串
+ *   indexOffset (16 字节对齐): productCount 个 (long id, long recordOffset), 按 id 升序
+ *   dataOffset: 记录 = double price, int categoryIndex (-1 表示无), 字符串 title, 字符串 description,
+ *               int imageCount, imageCount 个字符串
+ *   字符串 = int 字节数 (-1 表示 null) + UTF-8 字节
+ */
+public final class CatalogSnapshot {
+
+    static final int MAGIC = 0x43415431; // "CAT1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    // 每段映射 1GB, 16 字节对齐的索引项不会跨段
+    private static final long CHUNK_SIZE = 1L << 30;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private final Path path;
+    private final MappedByteBuffer[] chunks;
+    private final long chunkSize;
+    private final long size;
+    private final int productCount;
+    private final String[] categories;
+    private final long indexOffset;
+    private final long dataOffset;
+
+    private CatalogSnapshot(Path path, MappedByteBuffer[] chunks, long chunkSize, long size) {
+        this.path = path;
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.size = size;
+
+        if (getInt(0) != MAGIC || getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a catalog snapshot (v" + VERSION + "): " + path);
+        }
+        this.productCount = getInt(8);
+        int categoryCount = getInt(12);
+        this.indexOffset = getLong(16);
+        this.dataOffset = getLong(24);
+        if (productCount < 0 || categoryCount < 0 || indexOffset % INDEX_ENTRY_SIZE != 0
+                || indexOffset + (long) productCount * INDEX_ENTRY_SIZE > dataOffset || dataOffset > size) {
+            throw new IllegalArgumentException("Corrupt catalog snapshot header: " + path);
+        }
+
+        this.categories = new String[categoryCount];
+        long pos = HEADER_SIZE;
+        for (int i = 0; i < categoryCount; i++) {
+            int length = getInt(pos);
+            categories[i] = readString(pos + 4, length);
+            pos += 4 + Math.max(length, 0);
+        }
+    }
+
+    /**
+     * 映射快照文件 (只读), 映射建立后即可关闭文件通道
+     */
+    public static CatalogSnapshot open(Path path) throws IOException {
+        return open(path, CHUNK_SIZE);
+    }
+
+    /**
+     * 指定分段大小映射 (测试用小分段覆盖跨段读取), 须为索引项大小的整数倍
+     */
+    static CatalogSnapshot open(Path path, long chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE || chunkSize % INDEX_ENTRY_SIZE != 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IllegalArgumentException("Catalog snapshot too small: " + path);
+            }
+            int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+            }
+            return new CatalogSnapshot(path, chunks, chunkSize, size);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public List<String> getCategories() {
+        return List.of(categories);
+    }
+
+    public boolean contains(long productId) {
+        return find(productId) >= 0;
+    }
+
+    /**
+     * 按 id 读取产品详情, 不存在返回 null
+     * 除返回的 DTO (及其字符串 / 图片列表) 外不分配对象
+     */
+    public ProductDetailResponse getProductDetail(long productId) {
+        long recordOffset = find(productId);
+        return recordOffset >= 0 ? readRecord(productId, recordOffset) : null;
+    }
+
+    /**
+     * 按 id 升序遍历全部产品 (用于把快照灌入搜索索引)
+     */
+    public void forEach(Consumer<ProductDetailResponse> action) {
+        for (int i = 0; i < productCount; i++) {
+            long entry = indexOffset + (long) i * INDEX_ENTRY_SIZE;
+            action.accept(readRecord(getLong(entry), getLong(entry + 8)));
+        }
+    }
+
+    /**
+     * 按 id 升序遍历全部产品 id, 不读取记录
+     */
+    public void forEachId(LongConsumer action) {
+        for (int i = 0; i < productCount; i++) {
+            action.accept(getLong(indexOffset + (long) i * INDEX_ENTRY_SIZE));
+        }
+    }
+
+    private ProductDetailResponse readRecord(long productId, long recordOffset) {
+        long pos = recordOffset;
+        double price = getDouble(pos);
+        int categoryIndex = getInt(pos + 8);
+        pos += 12;
+
+        int titleLength = getInt(pos);
+        String title = readString(pos + 4, titleLength);
+        pos += 4 + Math.max(titleLength, 0);
+
+        int descriptionLength = getInt(pos);
+        String description = readString(pos + 4, descriptionLength);
+        pos += 4 + Math.max(descriptionLength, 0);
+
+        int imageCount = getInt(pos);
+        pos += 4;
+        String[] images = new String[imageCount];
+        for (int i = 0; i < imageCount; i++) {
+            int length = getInt(pos);
+            images[i] = readString(pos + 4, length);
+            pos += 4 + Math.max(length, 0);
+        }
+
+        return ProductDetailResponse.builder()
+                .id(productId)
+                .title(title)
+                .category(categoryIndex >= 0 ? categories[categoryIndex] : null)
+                .description(description)
+                .price(price)
+                .images(Arrays.asList(images))
+                .build();
+    }
+
+    /**
+     * 在映射的索引区二分查找, 返回记录偏移, 不存在返回 -1
+     */
+    private long find(long productId) {
+        int lo = 0;
+        int hi = productCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long entry = indexOffset + (long) mid * INDEX_ENTRY_SIZE;
+            long id = getLong(entry);
+            if (id < productId) {
+                lo = mid + 1;
+            } else if (id > productId) {
+                hi = mid - 1;
+            } else {
+                return getLong(entry + 8);
+            }
+        }
+        return -1;
+    }
+
+    // ==================== 跨段读取 ====================
+
+    private ByteBuffer chunk(long pos) {
+        return chunks[(int) (pos / chunkSize)];
+    }
+
+    private int getInt(long pos) {
+        int offset = (int) (pos % chunkSize);
+        if (offset + 4 <= chunkSize) {
+            return chunk(pos).getInt(offset);
+        }
+        return (int) readSplit(pos, 4);
+    }
+
+    private long getLong(long pos) {
+        int offset = (int) (pos % chunkSize);
+        if (offset + 8 <= chunkSize) {
+            return chunk(pos).getLong(offset);
+        }
+        return readSplit(pos, 8);
+    }
+
+    private double getDouble(long pos) {
+        return Double.longBitsToDouble(getLong(pos));
+    }
+
+    private long readSplit(long pos, int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            long p = pos + i;
+            value = (value << 8) | (chunk(p).get((int) (p % chunkSize)) & 0xFF);
+        }
+        return value;
+    }
+
+    private String readString(long pos, int length) {
+        if (length < 0) {
+            return null;
+        }
+        if (pos + length > size) {
+            throw new IllegalStateException("Catalog snapshot record out of bounds: " + path);
+        }
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        int copied = 0;
+        while (copied < length) {
+            long p = pos + copied;
+            int offset = (int) (p % chunkSize);
+            int n = (int) Math.min(length - copied, chunkSize - offset);
+            chunk(p).get(offset, scratch, copied, n);
+            copied += n;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package springbackend.Service;
+
+import springbackend.DTO.ProductDetailResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 目录快照服务 - 持有当前的内存映射快照, 文件更新后原子切换
+ * 1. 快照文件须通过 "写临时文件 + 重命名" 发布 (见 CatalogSnapshotWriter), 不能原地覆盖
+ * 2. 定时检查文件 (inode / 修改时间), 变化后映射新文件并替换引用
+ * 3. 旧快照不主动解除映射, 正在读取的请求读完后由 GC 回收
+ * 4. 搜索索引在堆上, 不收录整个快照 (数百万 SKU 会抵消内存映射的意义):
+ *    只刷新索引中已有的产品 (引擎返回过或被访问过), 并删除旧快照有而新快照没有的产品
+ */
+@Service
+@Slf4j
+public class CatalogSnapshotService {
+
+    private final AtomicReference<Loaded> current = new AtomicReference<>();
+    private final AtomicLong version = new AtomicLong();
+    private final Path path;
+    private final ProductSearchService productSearchService;
+
+    private record Loaded(CatalogSnapshot snapshot, Object fileKey, long lastModified) {
+    }
+
+    public CatalogSnapshotService(@Value("${catalog.snapshot.path:}") String path,
+                                  ProductSearchService productSearchService) {
+        this.path = path == null || path.isBlank() ? null : Path.of(path);
+        this.productSearchService = productSearchService;
+        reloadIfChanged();
+    }
+
+    /**
+     * 从当前快照读取产品详情, 未配置快照或不存在该产品返回 null
+     */
+    public ProductDetailResponse getProductDetail(Long productId) {
+        Loaded loaded = current.get();
+        if (loaded == null || productId == null) {
+            return null;
+        }
+        return loaded.snapshot().getProductDetail(productId);
+    }
+
+    /**
+     * 目录版本号, 每次切换快照加一 (用于使响应缓存失效)
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 检查快照文件是否更新, 更新则映射并切换
+     */
+    @Scheduled(fixedDelayString = "${catalog.snapshot.poll-interval-ms:10000}")
+    public synchronized void reloadIfChanged() {
+        if (path == null) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            Loaded loaded = current.get();
+            if (loaded != null && Objects.equals(loaded.fileKey(), attributes.fileKey())
+                    && loaded.lastModified() == lastModified) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            CatalogSnapshot snapshot = CatalogSnapshot.open(path);
+            // 先读一遍新快照中已收录的产品再切换, 有损坏记录时不会替换旧快照
+            int[] synced = syncSearchIndex(loaded != null ? loaded.snapshot() : null, snapshot);
+            current.set(new Loaded(snapshot, attributes.fileKey(), lastModified));
+            version.incrementAndGet();
+            log.info("Catalog snapshot loaded: {} products, {} categories from {} in {} ms ({} indexed refreshed, {} delisted)",
+                    snapshot.getProductCount(), snapshot.getCategories().size(), path,
+                    (System.nanoTime() - start) / 1_000_000, synced[0], synced[1]);
+        } catch (NoSuchFileException e) {
+            log.warn("Catalog snapshot not found: {}", path);
+        } catch (IOException | RuntimeException e) {
+            // 新文件无效时继续使用旧快照
+            log.error("Failed to load catalog snapshot from {}", path, e);
+        }
+    }
+
+    /**
+     * 用新快照刷新搜索索引中已有的产品, 返回 {刷新数, 删除数}
+     * 工作量与索引大小成正比, 与快照大小无关; 每个产品单独加写锁, 搜索不会被整个过程阻塞
+     * 只删除旧快照中有而新快照中没有的产品, 不影响仅由引擎返回的产品
+     */
+    private int[] syncSearchIndex(CatalogSnapshot previous, CatalogSnapshot snapshot) {
+        int refreshed = 0;
+        int removed = 0;
+        for (long productId : productSearchService.indexedIds()) {
+            ProductDetailResponse product = snapshot.getProductDetail(productId);
+            if (product != null) {
+                productSearchService.index(product);
+                refreshed++;
+            } else if (previous != null && previous.contains(productId)) {
+                productSearchService.remove(productId);
+                removed++;
+            }
+        }
+        return new int[]{refreshed, removed};
+    }
+}
@@ -0,0 +1,140 @@
+package springbackend.Service;
+
+import springbackend.DTO.ProductDetailResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 目录快照写入工具 (格式见 {@link CatalogSnapshot})
+ * 先写同目录下的临时文件再原子重命名, 正在映射旧文件的进程不受影响
+ */
+public final class CatalogSnapshotWriter {
+
+    private CatalogSnapshotWriter() {
+    }
+
+    /**
+     * 写入快照; 产品 id 为空或重复时抛出 IllegalArgumentException, 不会生成文件
+     * 命令行工具见 loadTest 源码集中的 CatalogSnapshotTool (./gradlew catalogSnapshot)
+     */
+    public static void write(Path target, List<ProductDetailResponse> products) throws IOException {
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i) == null || products.get(i).getId() == null) {
+                throw new IllegalArgumentException("Product at index " + i + " has no id");
+            }
+        }
+        List<ProductDetailResponse> sorted = new ArrayList<>(products);
+        sorted.sort(Comparator.comparing(ProductDetailResponse::getId));
+
+        Map<String, Integer> categoryIndex = new LinkedHashMap<>();
+        for (ProductDetailResponse product : sorted) {
+            if (product.getCategory() != null) {
+                categoryIndex.putIfAbsent(product.getCategory(), categoryIndex.size());
+            }
+        }
+
+        long categoryTableSize = 0;
+        for (String category : categoryIndex.keySet()) {
+            categoryTableSize += stringSize(category);
+        }
+        long indexOffset = align(CatalogSnapshot.HEADER_SIZE + categoryTableSize);
+        long dataOffset = indexOffset + (long) sorted.size() * CatalogSnapshot.INDEX_ENTRY_SIZE;
+
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeInt(CatalogSnapshot.MAGIC);
+                out.writeInt(CatalogSnapshot.VERSION);
+                out.writeInt(sorted.size());
+                out.writeInt(categoryIndex.size());
+                out.writeLong(indexOffset);
+                out.writeLong(dataOffset);
+                for (String category : categoryIndex.keySet()) {
+                    writeString(out, category);
+                }
+                for (long pos = CatalogSnapshot.HEADER_SIZE + categoryTableSize; pos < indexOffset; pos++) {
+                    out.writeByte(0);
+                }
+
+                long recordOffset = dataOffset;
+                Long previousId = null;
+                for (ProductDetailResponse product : sorted) {
+                    if (product.getId().equals(previousId)) {
+                        throw new IllegalArgumentException("Duplicate product id in catalog: " + previousId);
+                    }
+                    previousId = product.getId();
+                    out.writeLong(product.getId());
+                    out.writeLong(recordOffset);
+                    recordOffset += recordSize(product);
+                }
+
+                for (ProductDetailResponse product : sorted) {
+                    out.writeDouble(product.getPrice() != null ? product.getPrice() : 0.0);
+                    out.writeInt(product.getCategory() != null ? categoryIndex.get(product.getCategory()) : -1);
+                    writeString(out, product.getTitle());
+                    writeString(out, product.getDescription());
+                    List<String> images = product.getImages() != null ? product.getImages() : List.of();
+                    out.writeInt(images.size());
+                    for (String image : images) {
+                        writeString(out, image);
+                    }
+                }
+                // 重命名前落盘, 避免掉电后新文件名指向未写完的内容
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long recordSize(ProductDetailResponse product) {
+        long size = 8 + 4 + stringSize(product.getTitle()) + stringSize(product.getDescription()) + 4;
+        if (product.getImages() != null) {
+            for (String image : product.getImages()) {
+                size += stringSize(image);
+            }
+        }
+        return size;
+    }
+
+    private static long stringSize(String value) {
+        return 4 + (value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long align(long offset) {
+        long entry = CatalogSnapshot.INDEX_ENTRY_SIZE;
+        return (offset + entry - 1) / entry * entry;
+    }
+}
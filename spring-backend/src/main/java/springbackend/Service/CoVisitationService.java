@@ -0,0 +1,263 @@
+package springbackend.Service;
+
+import springbackend.DTO.BehaviorMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品共现索引 - 基于用户行为流在本地计算"相关商品"
+ * 1. 每个用户保留最近浏览/加购/购买的商品 (会话窗口内)
+ * 2. 新行为与窗口内每个商品两两加权 (点击 1, 加购 2, 购买 3)
+ * 3. 每个商品只保留 top-N 邻居 (原始类型数组, Space-Saving 替换最小项)
+ * 4. 定期衰减并清理低分邻居; 过期会话由单独的定时任务清理, 不在请求路径上扫描
+ * 5. 匿名用户 (未带 X-User-Id 时默认的 1) 和预热用户 0 的行为不计入, 否则所有匿名流量共用一个会话
+ *    索引只来自已登录用户 (前端在 X-User-Id 中发送各自的数字 id)
+ * 6. 达到商品 / 会话数量上限时丢弃新条目并计数, 衰减时输出告警
+ */
+@Service
+@Slf4j
+public class CoVisitationService {
+
+    private static final int SESSION_SIZE = 10;
+    private static final int MAX_TRACKED_PRODUCTS = 200_000;
+    private static final int MAX_TRACKED_SESSIONS = 100_000;
+
+    private final int topN;
+    private final long sessionWindowNanos;
+    private final float decayFactor;
+    private final float pruneThreshold;
+    private final Set<Long> ignoredUserIds;
+
+    private final ConcurrentHashMap<Long, NeighborList> neighbors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong droppedProducts = new AtomicLong();
+    private final AtomicLong droppedSessions = new AtomicLong();
+
+    public CoVisitationService(
+            @Value("${covisit.top-n:20}") int topN,
+            @Value("${covisit.session-window-minutes:30}") long sessionWindowMinutes,
+            @Value("${covisit.decay-factor:0.9}") float decayFactor,
+            @Value("${covisit.prune-threshold:0.1}") float pruneThreshold,
+            @Value("${covisit.ignored-user-ids:0,1}") Set<Long> ignoredUserIds) {
+        this.topN = topN;
+        this.sessionWindowNanos = TimeUnit.MINUTES.toNanos(sessionWindowMinutes);
+        this.decayFactor = decayFactor;
+        this.pruneThreshold = pruneThreshold;
+        this.ignoredUserIds = Set.copyOf(ignoredUserIds);
+    }
+
+    /**
+     * 记录一条用户行为
+     */
+    public void record(BehaviorMessage message) {
+        if (message == null || message.getUserId() == null || message.getProductId() == null
+                || ignoredUserIds.contains(message.getUserId())) {
+            return;
+        }
+        float weight = weightOf(message.getAction());
+        long productId = message.getProductId();
+        long now = System.nanoTime();
+
+        Session session = sessions.get(message.getUserId());
+        if (session == null) {
+            if (sessions.size() >= MAX_TRACKED_SESSIONS) {
+                // 等待定时清理过期会话, 请求路径上不做全表扫描
+                droppedSessions.incrementAndGet();
+                return;
+            }
+            session = sessions.computeIfAbsent(message.getUserId(), id -> new Session());
+        }
+        long[] recent = session.recentAndAdd(productId, now, now - sessionWindowNanos);
+
+        for (long other : recent) {
+            if (other != productId) {
+                addEdge(productId, other, weight);
+                addEdge(other, productId, weight);
+            }
+        }
+    }
+
+    /**
+     * 获取相关商品 id, 按共现得分从高到低
+     */
+    public List<Long> getRelated(Long productId, int limit) {
+        NeighborList list = neighbors.get(productId);
+        if (list == null) {
+            return List.of();
+        }
+        return list.top(limit);
+    }
+
+    /**
+     * 定期衰减: 所有得分乘以衰减系数, 低于阈值的邻居被清理
+     */
+    @Scheduled(fixedDelayString = "${covisit.decay-interval-ms:600000}")
+    public void decay() {
+        int before = neighbors.size();
+        neighbors.entrySet().removeIf(entry -> entry.getValue().decay(decayFactor, pruneThreshold) == 0);
+        log.debug("Co-visitation decay finished: products {} -> {}, sessions {}", before, neighbors.size(), sessions.size());
+
+        long products = droppedProducts.getAndSet(0);
+        long newSessions = droppedSessions.getAndSet(0);
+        if (products > 0 || newSessions > 0) {
+            log.warn("Co-visitation capacity reached since last decay: dropped {} new products (max {}), {} new sessions (max {})",
+                    products, MAX_TRACKED_PRODUCTS, newSessions, MAX_TRACKED_SESSIONS);
+        }
+    }
+
+    /**
+     * 定期清理窗口外的会话
+     */
+    @Scheduled(fixedDelayString = "${covisit.session-prune-interval-ms:60000}")
+    public void pruneSessions() {
+        long cutoff = System.nanoTime() - sessionWindowNanos;
+        sessions.entrySet().removeIf(entry -> entry.getValue().isExpired(cutoff));
+    }
+
+    int getTrackedSessions() {
+        return sessions.size();
+    }
+
+    private void addEdge(long from, long to, float weight) {
+        NeighborList list = neighbors.get(from);
+        if (list == null) {
+            if (neighbors.size() >= MAX_TRACKED_PRODUCTS) {
+                droppedProducts.incrementAndGet();
+                return;
+            }
+            list = neighbors.computeIfAbsent(from, id -> new NeighborList(topN));
+        }
+        list.add(to, weight);
+    }
+
+    private static float weightOf(String action) {
+        if (action == null) {
+            return 1f;
+        }
+        return switch (action) {
+            case "PURCHASE" -> 3f;
+            case "ADD_TO_CART" -> 2f;
+            default -> 1f;
+        };
+    }
+
+    /**
+     * 用户会话 - 最近 SESSION_SIZE 个商品的环形缓冲区
+     */
+    private static final class Session {
+
+        private final long[] productIds = new long[SESSION_SIZE];
+        private final long[] timestamps = new long[SESSION_SIZE];
+        private int next;
+        private int size;
+
+        /**
+         * 返回窗口内的其他商品 (去重), 并把当前商品写入缓冲区
+         */
+        synchronized long[] recentAndAdd(long productId, long now, long cutoff) {
+            long[] result = new long[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= cutoff && productIds[i] != productId && !contains(result, count, productIds[i])) {
+                    result[count++] = productIds[i];
+                }
+            }
+            productIds[next] = productId;
+            timestamps[next] = now;
+            next = (next + 1) % SESSION_SIZE;
+            size = Math.min(size + 1, SESSION_SIZE);
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+
+        synchronized boolean isExpired(long cutoff) {
+            int last = (next - 1 + SESSION_SIZE) % SESSION_SIZE;
+            return size == 0 || timestamps[last] < cutoff;
+        }
+
+        private static boolean contains(long[] values, int count, long value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 有界邻居列表 - 满了之后用新邻居替换得分最低的一项, 并继承其得分 (Space-Saving)
+     */
+    private static final class NeighborList {
+
+        private final long[] ids;
+        private final float[] scores;
+        private int size;
+
+        NeighborList(int capacity) {
+            this.ids = new long[capacity];
+            this.scores = new float[capacity];
+        }
+
+        synchronized void add(long id, float weight) {
+            int min = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    scores[i] += weight;
+                    return;
+                }
+                if (scores[i] < scores[min]) {
+                    min = i;
+                }
+            }
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = weight;
+                size++;
+            } else {
+                ids[min] = id;
+                scores[min] += weight;
+            }
+        }
+
+        synchronized List<Long> top(int limit) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+            int count = Math.min(limit, size);
+            List<Long> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(ids[order[i]]);
+            }
+            return result;
+        }
+
+        /**
+         * 衰减并压缩数组, 返回剩余邻居数
+         */
+        synchronized int decay(float factor, float threshold) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                float score = scores[i] * factor;
+                if (score >= threshold) {
+                    ids[kept] = ids[i];
+                    scores[kept] = score;
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package springbackend.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求截止时间 - 在请求入口创建 (DeadlineInterceptor), 通过线程上下文传给下游调用
+ * 1. 每次下游调用只使用剩余时间, 并通过 X-Request-Timeout-Ms 转发给推荐引擎
+ * 2. 截止时间已过时 check 抛出 DeadlineExceededException, 不再继续后续工作
+ * 3. 没有截止时间 (后台任务 / 预热) 时 current() 返回 null, 不做限制
+ */
+public final class Deadline {
+
+    /**
+     * 剩余时间 (毫秒) 请求头, 客户端和推荐引擎共用; 使用相对时间避免时钟偏差
+     */
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * 当前线程的截止时间, 没有时返回 null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public static void set(Deadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 当前线程的截止时间已过时抛出异常
+     */
+    public static void checkCurrent(String operation) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check(operation);
+        }
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos()));
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    public void check(String operation) {
+        if (isExpired()) {
+            throw new DeadlineExceededException(operation);
+        }
+    }
+}
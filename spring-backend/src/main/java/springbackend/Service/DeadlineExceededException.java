@@ -0,0 +1,11 @@
+package springbackend.Service;
+
+/**
+ * 请求截止时间已过, 后续的下游调用不再执行
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String operation) {
+        super("Request deadline exceeded: " + operation);
+    }
+}
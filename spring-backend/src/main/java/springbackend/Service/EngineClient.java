@@ -0,0 +1,418 @@
+package springbackend.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 推荐引擎客户端 - 在多个引擎实例之间做客户端负载均衡
+ * 1. 实例列表来自 recommendation.engine.urls (逗号分隔), 为空时只使用 recommendation.engine.url
+ * 2. 二选一 (power of two choices): 随机取两个健康实例, 选进行中请求数较少的
+ * 3. 连续失败达到阈值的实例被摘除一段时间, 到期后重新参与选择; 全部被摘除时仍从所有实例中选
+ * 4. 幂等 GET 超过该接口的延迟分位数仍未返回时, 向另一个实例发送对冲请求, 先成功的结果生效
+ *    每个接口 (路径去掉查询参数, 数字段归一为 {id}) 单独统计延迟; POST 不对冲, 也不计入延迟统计
+ * 5. 对冲受预算限制: 每个请求积累 budget-ratio 个令牌, 每次对冲消耗 1 个, 过载时不会放大流量
+ * 6. GET 有请求截止时间 (Deadline) 时只等待剩余时间, 并通过请求头把剩余时间转发给引擎
+ */
+@Service
+@Slf4j
+public class EngineClient {
+
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final int MIN_SAMPLES_FOR_HEDGE = 100;
+    private static final long TOKEN_SCALE = 1000;
+
+    private final RestTemplate restTemplate;
+    private final List<Instance> instances;
+    private final int ejectionFailures;
+    private final long ejectionNanos;
+
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final long hedgeTokensPerRequest;
+    private final long hedgeMaxTokens;
+    private final AtomicLong hedgeTokens = new AtomicLong();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 单个接口最近的成功请求延迟 (环形缓冲) 及据此计算的对冲阈值
+     */
+    static final class Endpoint {
+        final long[] latencies = new long[LATENCY_SAMPLES];
+        final AtomicLong cursor = new AtomicLong();
+        volatile long hedgeDelayNanos = -1;
+
+        void record(long latencyNanos) {
+            int slot = (int) (cursor.getAndIncrement() % LATENCY_SAMPLES);
+            synchronized (latencies) {
+                latencies[slot] = latencyNanos;
+            }
+        }
+    }
+
+    /**
+     * 引擎实例及其负载 / 健康状态
+     */
+    static final class Instance {
+        final String url;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile long ejectedUntilNanos;
+
+        Instance(String url) {
+            this.url = url;
+            // nanoTime 可能为负数, 不能用 0 表示"未摘除"
+            this.ejectedUntilNanos = System.nanoTime();
+        }
+
+        boolean isHealthy(long now) {
+            return now - ejectedUntilNanos >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+
+    public EngineClient(RestTemplate restTemplate,
+                        @Value("${recommendation.engine.url}") String engineUrl,
+                        @Value("${recommendation.engine.urls:}") String engineUrls,
+                        @Value("${recommendation.engine.ejection.failures:3}") int ejectionFailures,
+                        @Value("${recommendation.engine.ejection.duration-ms:30000}") long ejectionMillis,
+                        @Value("${recommendation.engine.hedge.enabled:true}") boolean hedgeEnabled,
+                        @Value("${recommendation.engine.hedge.percentile:95}") double hedgePercentile,
+                        @Value("${recommendation.engine.hedge.min-delay-ms:10}") long hedgeMinDelayMillis,
+                        @Value("${recommendation.engine.hedge.budget-ratio:0.1}") double hedgeBudgetRatio) {
+        this.restTemplate = restTemplate;
+        this.instances = parseInstances(engineUrls == null || engineUrls.isBlank() ? engineUrl : engineUrls);
+        this.ejectionFailures = ejectionFailures;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+        this.hedgeEnabled = hedgeEnabled && instances.size() > 1;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMillis);
+        this.hedgeTokensPerRequest = Math.round(hedgeBudgetRatio * TOKEN_SCALE);
+        // 最多积攒 10 次对冲, 避免空闲后突发大量对冲
+        this.hedgeMaxTokens = 10 * TOKEN_SCALE;
+        log.info("Recommendation engine instances: {} (hedging {})", instances, this.hedgeEnabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * 幂等 GET, 允许对冲
+     * 存在请求截止时间时只等待剩余时间, 超时后取消所有尝试并抛出 DeadlineExceededException
+     */
+    public <T> T get(String path, HttpEntity<?> request, ParameterizedTypeReference<T> responseType) throws Exception {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.check("GET " + path);
+        }
+        depositHedgeToken();
+        Endpoint endpoint = endpoint(path);
+        Instance primary = choose(null);
+        long delay = hedgeEnabled ? endpoint.hedgeDelayNanos : -1;
+        if (delay < 0 && deadline == null) {
+            return call(primary, path, HttpMethod.GET, request, responseType, null, endpoint);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Future<?>> attempts = new ArrayList<>(2);
+        attempts.add(attempt(result, pending, primary, path, request, responseType, deadline, endpoint));
+        try {
+            if (delay >= 0) {
+                try {
+                    return result.get(Math.min(delay, remainingNanos(deadline)), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (deadline != null) {
+                        deadline.check("GET " + path);
+                    }
+                    // 主请求超过延迟分位数, 向另一个实例发送对冲请求
+                    Instance secondary = chooseHedge(primary);
+                    if (secondary != null) {
+                        log.debug("Hedging GET {} from {} to {}", path, primary, secondary);
+                        pending.incrementAndGet();
+                        attempts.add(attempt(result, pending, secondary, path, request, responseType, deadline, endpoint));
+                    }
+                } catch (ExecutionException e) {
+                    // 主请求快速失败 (连接拒绝 / 5xx), 同样在预算内换一个实例重试
+                    Exception cause = unwrap(e);
+                    Instance secondary = cause instanceof HttpClientErrorException ? null : chooseHedge(primary);
+                    if (secondary == null) {
+                        throw cause;
+                    }
+                    log.debug("Retrying GET {} on {} after failure on {}", path, secondary, primary);
+                    result = new CompletableFuture<>();
+                    attempts.add(attempt(result, new AtomicInteger(1), secondary, path, request, responseType, deadline, endpoint));
+                }
+            }
+            return await(result, deadline, "GET " + path);
+        } finally {
+            // 取消仍在进行的尝试 (对冲中较慢的一方, 或已超过截止时间的请求)
+            for (Future<?> future : attempts) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 非幂等 POST, 只发送一次 (不对冲, 延迟不计入对冲阈值)
+     * 不受请求截止时间约束: 调用方 (行为上报) 在请求线程之外异步发送, 已写入 Redis 的操作不会因取消而丢失事件
+     */
+    public void post(String path, HttpEntity<?> request) throws Exception {
+        call(choose(null), path, HttpMethod.POST, request, ParameterizedTypeReference.forType(Void.class), null, null);
+    }
+
+    /**
+     * 根据各接口最近的成功请求延迟刷新对冲阈值
+     */
+    @Scheduled(fixedDelayString = "${recommendation.engine.hedge.refresh-ms:1000}")
+    public void refreshHedgeDelay() {
+        if (!hedgeEnabled) {
+            return;
+        }
+        for (Endpoint endpoint : endpoints.values()) {
+            int count = (int) Math.min(endpoint.cursor.get(), LATENCY_SAMPLES);
+            if (count < MIN_SAMPLES_FOR_HEDGE) {
+                endpoint.hedgeDelayNanos = -1;
+                continue;
+            }
+            long[] sorted;
+            synchronized (endpoint.latencies) {
+                sorted = Arrays.copyOf(endpoint.latencies, count);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.min(count - 1, Math.ceil(hedgePercentile / 100.0 * count) - 1);
+            endpoint.hedgeDelayNanos = Math.max(hedgeMinDelayNanos, sorted[Math.max(0, index)]);
+        }
+    }
+
+    /**
+     * 某个接口当前的对冲阈值, 样本不足时为 -1
+     */
+    long hedgeDelayNanos(String path) {
+        Endpoint endpoint = endpoints.get(endpointKey(path));
+        return endpoint != null ? endpoint.hedgeDelayNanos : -1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== 对冲 ====================
+
+    /**
+     * 选择对冲目标实例, 没有其他实例或预算不足时返回 null
+     */
+    private Instance chooseHedge(Instance primary) {
+        Instance secondary = choose(primary);
+        return secondary != null && tryTakeHedgeToken() ? secondary : null;
+    }
+
+    private <T> Future<?> attempt(CompletableFuture<T> result, AtomicInteger pending, Instance instance, String path,
+                                  HttpEntity<?> request, ParameterizedTypeReference<T> responseType, Deadline deadline,
+                                  Endpoint endpoint) {
+        return executor.submit(() -> {
+            try {
+                result.complete(call(instance, path, HttpMethod.GET, request, responseType, deadline, endpoint));
+            } catch (Exception e) {
+                // 所有尝试都失败时才向调用方报告失败
+                if (pending.decrementAndGet() == 0 || e instanceof HttpClientErrorException) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private static <T> T await(CompletableFuture<T> result, Deadline deadline, String operation) throws Exception {
+        try {
+            return deadline == null ? result.get() : result.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(operation);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static long remainingNanos(Deadline deadline) {
+        return deadline == null ? Long.MAX_VALUE : deadline.remainingNanos();
+    }
+
+    private void depositHedgeToken() {
+        hedgeTokens.accumulateAndGet(hedgeTokensPerRequest, (current, add) -> Math.min(hedgeMaxTokens, current + add));
+    }
+
+    private boolean tryTakeHedgeToken() {
+        long current;
+        do {
+            current = hedgeTokens.get();
+            if (current < TOKEN_SCALE) {
+                return false;
+            }
+        } while (!hedgeTokens.compareAndSet(current, current - TOKEN_SCALE));
+        return true;
+    }
+
+    // ==================== 负载均衡 / 健康检查 ====================
+
+    /**
+     * 二选一: 随机取两个健康实例, 返回进行中请求较少的; exclude 不为空时不选该实例 (没有其他实例返回 null)
+     */
+    private Instance choose(Instance exclude) {
+        long now = System.nanoTime();
+        List<Instance> candidates = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (instance != exclude && instance.isHealthy(now)) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            if (exclude != null) {
+                return null;
+            }
+            // 全部被摘除: 仍然尝试, 由失败计数决定何时恢复
+            candidates.addAll(instances);
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) {
+            j++;
+        }
+        Instance a = candidates.get(i);
+        Instance b = candidates.get(j);
+        return a.outstanding.get() <= b.outstanding.get() ? a : b;
+    }
+
+    /**
+     * 发送一次请求; endpoint 为 null 时不记录延迟 (POST)
+     */
+    private <T> T call(Instance instance, String path, HttpMethod method, HttpEntity<?> request,
+                       ParameterizedTypeReference<T> responseType, Deadline deadline, Endpoint endpoint) {
+        instance.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            HttpEntity<?> entity = deadline != null ? withDeadlineHeader(request, deadline) : request;
+            T body = restTemplate.exchange(instance.url + path, method, entity, responseType).getBody();
+            recordSuccess(instance, endpoint, System.nanoTime() - start);
+            return body;
+        } catch (HttpClientErrorException e) {
+            // 4xx 是请求本身的问题, 不代表实例不健康
+            recordSuccess(instance, endpoint, System.nanoTime() - start);
+            throw e;
+        } catch (RuntimeException e) {
+            // 被取消 (对冲落败 / 超过截止时间) 不代表实例不健康
+            if (!Thread.currentThread().isInterrupted()) {
+                recordFailure(instance);
+            }
+            throw e;
+        } finally {
+            instance.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * 把剩余时间转发给引擎, 引擎可据此放弃已经没有意义的计算
+     */
+    private static HttpEntity<?> withDeadlineHeader(HttpEntity<?> request, Deadline deadline) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(request.getHeaders());
+        headers.set(Deadline.HEADER, String.valueOf(deadline.remainingMillis()));
+        return new HttpEntity<>(request.getBody(), headers);
+    }
+
+    private void recordSuccess(Instance instance, Endpoint endpoint, long latencyNanos) {
+        instance.consecutiveFailures.set(0);
+        if (endpoint != null) {
+            endpoint.record(latencyNanos);
+        }
+    }
+
+    private Endpoint endpoint(String path) {
+        return endpoints.computeIfAbsent(endpointKey(path), key -> new Endpoint());
+    }
+
+    /**
+     * 接口标识: 去掉查询参数, 纯数字的路径段归一为 {id} (例如 /products/42 -> /products/{id})
+     */
+    static String endpointKey(String path) {
+        int query = path.indexOf('?');
+        String[] segments = (query >= 0 ? path.substring(0, query) : path).split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (!segments[i].isEmpty() && segments[i].chars().allMatch(Character::isDigit)) {
+                segments[i] = "{id}";
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * 解析并校验实例列表: 每项须为带主机名的 http / https 地址, 列表不能为空
+     */
+    static List<Instance> parseInstances(String urls) {
+        List<Instance> parsed = new ArrayList<>();
+        for (String entry : (urls == null ? "" : urls).split(",", -1)) {
+            String url = entry.trim();
+            if (url.isEmpty()) {
+                throw new IllegalArgumentException("Empty entry in recommendation.engine.urls: '" + urls + "'");
+            }
+            URI uri;
+            try {
+                uri = new URI(url);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid recommendation engine URL: " + url, e);
+            }
+            if (!("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))
+                    || uri.getHost() == null) {
+                throw new IllegalArgumentException("Recommendation engine URL must be http(s)://host[:port]: " + url);
+            }
+            parsed.add(new Instance(url.endsWith("/") ? url.substring(0, url.length() - 1) : url));
+        }
+        return List.copyOf(parsed);
+    }
+
+    private void recordFailure(Instance instance) {
+        if (instance.consecutiveFailures.incrementAndGet() >= ejectionFailures && instances.size() > 1) {
+            instance.ejectedUntilNanos = System.nanoTime() + ejectionNanos;
+            instance.consecutiveFailures.set(0);
+            log.warn("Ejecting recommendation engine instance {} for {} ms",
+                    instance, TimeUnit.NANOSECONDS.toMillis(ejectionNanos));
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+}
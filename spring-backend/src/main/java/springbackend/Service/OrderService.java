@@ -0,0 +1,358 @@
+package springbackend.Service;
+
+import springbackend.DTO.BehaviorMessage;
+import springbackend.DTO.OrderResponse;
+import springbackend.Entity.CartItem;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单服务 - 异步、幂等的下单流程
+ * 1. 下单: 一次 Lua 脚本调用 (一次 Redis 往返) 完成 幂等检查 + 购物车快照并清空 + 写订单 + 入队
+ * 2. 处理: 定时从队列领取订单 (附带租约), 在独立的工作线程上同步发送购买行为, 全部送达后才标记完成并释放租约;
+ *    引擎出错时订单保留租约, 到期后由恢复流程重新入队
+ * 3. 恢复: 定时把租约过期的订单 (处理它的实例已崩溃或卡住) 放回待处理队列, 至少处理一次
+ *    只回收过期租约, 其他实例正在处理的订单不受影响; 租约时间以 Redis 服务器时钟为准
+ * 4. 查询: 客户端用 orderId 轮询订单状态
+ */
+@Service
+@Slf4j
+public class OrderService {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+
+    private static final String ORDER_KEY_PREFIX = "order:";
+    private static final String ORDER_ITEMS_SUFFIX = ":items";
+    private static final String IDEMPOTENCY_KEY_PREFIX = "order:idem:";
+    private static final String PENDING_QUEUE = "orders:pending";
+    // 处理中的订单: ZSET, score 为租约到期时间 (毫秒)
+    private static final String LEASES = "orders:leases";
+    private static final String SENT_FIELD_PREFIX = "sent:";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 128;
+
+    /**
+     * KEYS: 1 幂等键, 2 购物车, 3 订单商品, 4 订单, 5 待处理队列
+     * ARGV: 1 orderId, 2 userId, 3 createdAt, 4 订单保留秒数, 5 幂等键保留秒数
+     * 返回: "CREATED:<orderId>" / "EXISTING:<orderId>" / "EMPTY"
+     * RENAME 是 O(1) 的, 与购物车大小无关; 之后的加购写入新的购物车
+     */
+    private static final DefaultRedisScript<String> PLACE_ORDER_SCRIPT = new DefaultRedisScript<>("""
+            local existing = redis.call('GET', KEYS[1])
+            if existing then
+                return 'EXISTING:' .. existing
+            end
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                return 'EMPTY'
+            end
+            redis.call('RENAME', KEYS[2], KEYS[3])
+            redis.call('EXPIRE', KEYS[3], ARGV[4])
+            redis.call('HSET', KEYS[4], 'orderId', ARGV[1], 'userId', ARGV[2], 'status', 'PENDING', 'createdAt', ARGV[3])
+            redis.call('EXPIRE', KEYS[4], ARGV[4])
+            redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[5])
+            redis.call('RPUSH', KEYS[5], ARGV[1])
+            return 'CREATED:' .. ARGV[1]
+            """, String.class);
+
+    /**
+     * KEYS: 1 待处理队列, 2 租约
+     * ARGV: 1 租约毫秒数
+     * 返回: 领取到的 orderId, 队列为空返回 nil
+     */
+    private static final DefaultRedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local orderId = redis.call('LPOP', KEYS[1])
+            if not orderId then
+                return false
+            end
+            local now = redis.call('TIME')
+            local nowMillis = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000)
+            redis.call('ZADD', KEYS[2], nowMillis + tonumber(ARGV[1]), orderId)
+            return orderId
+            """, String.class);
+
+    /**
+     * KEYS: 1 待处理队列, 2 租约
+     * ARGV: 1 单次最多回收数量
+     * 返回: 放回队首的订单数量
+     */
+    private static final DefaultRedisScript<Long> REAP_SCRIPT = new DefaultRedisScript<>("""
+            local now = redis.call('TIME')
+            local nowMillis = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000)
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', nowMillis, 'LIMIT', 0, tonumber(ARGV[1]))
+            for _, orderId in ipairs(expired) do
+                redis.call('ZREM', KEYS[2], orderId)
+                redis.call('LPUSH', KEYS[1], orderId)
+            end
+            return #expired
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RecommendEngineService recommendEngineService;
+    private final RedisDeadlineExecutor redisExecutor;
+
+    @Value("${order.retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${order.idempotency-hours:24}")
+    private long idempotencyHours;
+
+    @Value("${order.batch-size:50}")
+    private int batchSize;
+
+    // 租约须明显长于一次订单处理 (含引擎调用) 的耗时
+    @Value("${order.lease-ms:60000}")
+    private long leaseMillis;
+
+    // 订单在独立的虚拟线程上处理, 调度线程只负责领取; 信号量限制同时处理的订单数
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+
+    public OrderService(StringRedisTemplate stringRedisTemplate,
+                        RedisTemplate<String, Object> redisTemplate,
+                        RecommendEngineService recommendEngineService,
+                        RedisDeadlineExecutor redisExecutor,
+                        @Value("${order.workers:8}") int workerCount) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTemplate = redisTemplate;
+        this.recommendEngineService = recommendEngineService;
+        this.redisExecutor = redisExecutor;
+        this.permits = new Semaphore(Math.max(1, workerCount));
+    }
+
+    /**
+     * 下单 - 一次 Redis 往返 (EVALSHA); 截止时间已过时不发送, 发送后等待确认
+     * 同一用户重复提交相同的幂等键返回同一订单
+     */
+    public OrderResponse placeOrder(Long userId, String cartKey, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            // 没有幂等键时无法识别重试, 每次请求都视为新订单
+            idempotencyKey = UUID.randomUUID().toString();
+        } else if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key is too long");
+        }
+
+        String orderId = UUID.randomUUID().toString();
+        long createdAt = System.currentTimeMillis();
+        byte[][] keys = utf8(IDEMPOTENCY_KEY_PREFIX + userId + ":" + idempotencyKey,
+                cartKey,
+                itemsKey(orderId),
+                ORDER_KEY_PREFIX + orderId,
+                PENDING_QUEUE);
+        byte[][] args = utf8(orderId,
+                String.valueOf(userId),
+                String.valueOf(createdAt),
+                String.valueOf(retentionHours * 3600),
+                String.valueOf(idempotencyHours * 3600));
+        byte[] reply = evalPlaceOrder(keys, args);
+        String result = reply != null ? new String(reply, StandardCharsets.UTF_8) : null;
+
+        if (result == null || result.equals("EMPTY")) {
+            throw new RuntimeException("Cart is empty");
+        }
+        if (result.startsWith("EXISTING:")) {
+            String existingId = result.substring("EXISTING:".length());
+            log.info("Duplicate purchase request for user {}, returning order {}", userId, existingId);
+            OrderResponse existing = getOrder(userId, existingId);
+            return existing != null ? existing : OrderResponse.builder().orderId(existingId).status(STATUS_PENDING).build();
+        }
+
+        log.info("Order {} placed for user {}", orderId, userId);
+        return OrderResponse.builder()
+                .orderId(orderId)
+                .status(STATUS_PENDING)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    /**
+     * 查询订单, 订单不存在或不属于该用户返回 null
+     */
+    public OrderResponse getOrder(Long userId, String orderId) {
+        Map<Object, Object> order = stringRedisTemplate.opsForHash().entries(ORDER_KEY_PREFIX + orderId);
+        if (order.isEmpty() || !String.valueOf(userId).equals(order.get("userId"))) {
+            return null;
+        }
+        return OrderResponse.builder()
+                .orderId(orderId)
+                .status((String) order.get("status"))
+                .items(getItems(orderId))
+                .createdAt(parseLong(order.get("createdAt")))
+                .completedAt(parseLong(order.get("completedAt")))
+                .build();
+    }
+
+    /**
+     * 领取待处理订单并交给工作线程: 处理完成后释放租约
+     * 只领取有空闲工作线程的数量, 领到的订单不会在本地排队等到租约过期
+     */
+    @Scheduled(fixedDelayString = "${order.poll-interval-ms:200}")
+    public void processPendingOrders() {
+        try {
+            for (int i = 0; i < batchSize && permits.tryAcquire(); i++) {
+                String orderId;
+                try {
+                    orderId = claimNext();
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+                if (orderId == null) {
+                    permits.release();
+                    return;
+                }
+                workers.execute(() -> {
+                    try {
+                        process(orderId);
+                        stringRedisTemplate.opsForZSet().remove(LEASES, orderId);
+                    } catch (Exception e) {
+                        // 不释放租约, 到期后由 reapExpiredLeases 放回队列重试
+                        log.error("Error processing order {}", orderId, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            log.error("Error claiming pending orders", e);
+        }
+    }
+
+    /**
+     * 把租约过期的订单放回待处理队列队首
+     */
+    @Scheduled(fixedDelayString = "${order.reap-interval-ms:5000}")
+    public void reapExpiredLeases() {
+        try {
+            Long requeued = stringRedisTemplate.execute(REAP_SCRIPT, List.of(PENDING_QUEUE, LEASES),
+                    String.valueOf(batchSize));
+            if (requeued != null && requeued > 0) {
+                log.warn("Requeued {} orders with expired leases", requeued);
+            }
+        } catch (Exception e) {
+            log.warn("Could not requeue orders with expired leases: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 停止领取后等待正在处理的订单结束, 未结束的订单由租约到期回收
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Orders still in flight at shutdown, they will be retried after their lease expires");
+        }
+    }
+
+    /**
+     * 从待处理队列领取一个订单并记录租约, 队列为空返回 null
+     */
+    String claimNext() {
+        return stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(PENDING_QUEUE, LEASES), String.valueOf(leaseMillis));
+    }
+
+    private void process(String orderId) throws Exception {
+        String orderKey = ORDER_KEY_PREFIX + orderId;
+        Map<Object, Object> order = stringRedisTemplate.opsForHash().entries(orderKey);
+        if (order.isEmpty()) {
+            log.warn("Order {} expired before processing", orderId);
+            return;
+        }
+        if (STATUS_COMPLETED.equals(order.get("status"))) {
+            return;
+        }
+
+        Long userId = Long.valueOf((String) order.get("userId"));
+        stringRedisTemplate.opsForHash().put(orderKey, "status", STATUS_PROCESSING);
+
+        // 同步发送每个产品的购买行为, 失败时抛出异常: 订单保留租约, 到期后重新处理
+        // 已送达的产品记录在订单上 (sent:<productId>), 重试时不重复发送
+        for (CartItem cartItem : getItems(orderId)) {
+            String sentField = SENT_FIELD_PREFIX + cartItem.getProductId();
+            if (order.containsKey(sentField)) {
+                continue;
+            }
+            BehaviorMessage purchaseBehavior = BehaviorMessage.builder()
+                    .productId(cartItem.getProductId())
+                    .title(cartItem.getTitle())
+                    .category(cartItem.getCategory())
+                    .action("PURCHASE")
+                    .userId(userId)
+                    .build();
+            recommendEngineService.sendBehaviorOrThrow(purchaseBehavior);
+            stringRedisTemplate.opsForHash().put(orderKey, sentField, "1");
+        }
+
+        stringRedisTemplate.opsForHash().putAll(orderKey, Map.of(
+                "status", STATUS_COMPLETED,
+                "completedAt", String.valueOf(System.currentTimeMillis())));
+        log.info("Order {} completed for user {}", orderId, userId);
+    }
+
+    private List<CartItem> getItems(String orderId) {
+        List<Object> values = redisTemplate.opsForHash().values(itemsKey(orderId));
+        List<CartItem> items = new ArrayList<>(values.size());
+        for (Object obj : values) {
+            if (obj instanceof CartItem) {
+                items.add((CartItem) obj);
+            }
+        }
+        return items;
+    }
+
+    private static String itemsKey(String orderId) {
+        return ORDER_KEY_PREFIX + orderId + ORDER_ITEMS_SUFFIX;
+    }
+
+    /**
+     * 用 EVALSHA 执行下单脚本, 只发送脚本摘要; Redis 的脚本缓存为空 (重启 / SCRIPT FLUSH) 时
+     * 发送一次脚本全文 (同时载入缓存), 与 DefaultRedisScript 的做法相同
+     * 截止时间只在发送前检查, 发送后等待确认 (见 RedisDeadlineExecutor.write)
+     */
+    private byte[] evalPlaceOrder(byte[][] keys, byte[][] args) {
+        try {
+            return redisExecutor.write(stringRedisTemplate, "PLACE_ORDER", commands -> commands.<byte[]>evalsha(
+                    PLACE_ORDER_SCRIPT.getSha1(), ScriptOutputType.VALUE, keys, args));
+        } catch (RedisSystemException e) {
+            if (!(e.getCause() instanceof RedisNoScriptException)) {
+                throw e;
+            }
+            // NOSCRIPT: 脚本没有执行, 可以安全地重新发送
+            return redisExecutor.write(stringRedisTemplate, "PLACE_ORDER", commands -> commands.<byte[]>eval(
+                    PLACE_ORDER_SCRIPT.getScriptAsString(), ScriptOutputType.VALUE, keys, args));
+        }
+    }
+
+    private static byte[][] utf8(String... values) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static Long parseLong(Object value) {
+        return value != null ? Long.valueOf((String) value) : null;
+    }
+}
@@ -0,0 +1,429 @@
+package springbackend.Service;
+
+import springbackend.DTO.ProductDTO;
+import springbackend.DTO.ProductDetailResponse;
+import springbackend.DTO.ProductSearchResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 产品搜索服务 - 进程内倒排索引
+ * 1. 对 title / category / description 分词, 每个词一个 RoaringBitmap 倒排表
+ * 2. 查询词支持前缀匹配, 无命中时按编辑距离做容错匹配 (先用字符二元组筛选候选词, 首字母错误也能命中)
+ * 3. 类目分面 (每个类目一个倒排表)
+ * 4. 推荐引擎每返回一次产品数据就增量更新索引, 引擎返回 404 的产品从索引中删除
+ * 5. 只收录引擎返回过或从目录快照读取过的产品 (类目浏览同理), 索引大小与访问过的产品数成正比;
+ *    快照切换时刷新这些产品并删除快照中已不存在的产品
+ */
+@Service
+@Slf4j
+public class ProductSearchService {
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int MAX_LIMIT = 100;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // productId -> docId (docId 为倒排表中使用的紧凑 int 编号, 删除后保留以便复用)
+    private final Map<Long, Integer> docIds = new HashMap<>();
+    private final List<Entry> docs = new ArrayList<>();
+    private final TreeMap<String, RoaringBitmap> postings = new TreeMap<>();
+    private final Map<String, RoaringBitmap> categoryPostings = new HashMap<>();
+    private final RoaringBitmap liveDocs = new RoaringBitmap();
+    // 字符二元组 -> 词 (编辑距离容错的候选筛选)
+    private final Map<String, Set<String>> termGrams = new HashMap<>();
+
+    private record Entry(Long id, String title, String category, String description,
+                         Double price, List<String> images, Set<String> terms) {
+    }
+
+    /**
+     * 收录产品详情 (包含描述)
+     */
+    public void index(ProductDetailResponse product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        upsert(product.getId(), product.getTitle(), product.getCategory(), product.getDescription(),
+                product.getPrice(), product.getImages());
+    }
+
+    /**
+     * 收录菜单中的产品 (没有描述, 保留之前收录的描述)
+     */
+    public void index(ProductDTO product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        upsert(product.getId(), product.getTitle(), product.getCategory(), null,
+                product.getPrice(), product.getImages());
+    }
+
+    public void indexAll(List<ProductDTO> products) {
+        if (products == null) {
+            return;
+        }
+        for (ProductDTO product : products) {
+            index(product);
+        }
+    }
+
+    /**
+     * 从索引中删除产品
+     */
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer docId = docIds.get(productId);
+            if (docId != null && docs.get(docId) != null) {
+                unindex(docId);
+                docs.set(docId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 只保留 keep 返回 true 的产品, 返回删除的数量 (目录整体更新后清理已下架的产品)
+     */
+    public int retainAll(Predicate<Long> keep) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (Map.Entry<Long, Integer> doc : docIds.entrySet()) {
+                int docId = doc.getValue();
+                if (docs.get(docId) != null && !keep.test(doc.getKey())) {
+                    unindex(docId);
+                    docs.set(docId, null);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按 id 查找已收录的产品, 未收录返回 null
+     */
+    public ProductDTO find(Long productId) {
+        lock.readLock().lock();
+        try {
+            Integer docId = docIds.get(productId);
+            Entry entry = docId != null ? docs.get(docId) : null;
+            return entry != null ? toProduct(entry) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已收录产品的 id (副本)
+     */
+    public long[] indexedIds() {
+        lock.readLock().lock();
+        try {
+            long[] ids = new long[liveDocs.getCardinality()];
+            IntIterator it = liveDocs.getIntIterator();
+            for (int i = 0; it.hasNext(); i++) {
+                ids[i] = docs.get(it.next()).id();
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索产品
+     * query 为空时返回全部产品 (配合 category 即类目浏览)
+     * 分面统计基于文本命中结果, 不受 category 过滤影响
+     */
+    public ProductSearchResponse search(String query, String category, int offset, int limit) {
+        List<String> tokens = new ArrayList<>(tokenize(query));
+        int pageSize = Math.max(0, Math.min(limit, MAX_LIMIT));
+        int skip = Math.max(0, offset);
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matched = null;
+            for (String token : tokens) {
+                RoaringBitmap termDocs = lookup(token);
+                matched = matched == null ? termDocs : RoaringBitmap.and(matched, termDocs);
+                if (matched.isEmpty()) {
+                    break;
+                }
+            }
+            if (matched == null) {
+                matched = liveDocs.clone();
+            }
+
+            Map<String, Integer> facets = new TreeMap<>();
+            for (Map.Entry<String, RoaringBitmap> facet : categoryPostings.entrySet()) {
+                int count = RoaringBitmap.andCardinality(matched, facet.getValue());
+                if (count > 0) {
+                    facets.put(facet.getKey(), count);
+                }
+            }
+
+            if (category != null && !category.isBlank()) {
+                RoaringBitmap categoryDocs = categoryPostings.get(category);
+                matched = categoryDocs != null ? RoaringBitmap.and(matched, categoryDocs) : new RoaringBitmap();
+            }
+
+            List<ProductDTO> page = new ArrayList<>(Math.min(pageSize, matched.getCardinality()));
+            IntIterator it = matched.getIntIterator();
+            int position = 0;
+            while (it.hasNext() && page.size() < pageSize) {
+                int docId = it.next();
+                if (position++ < skip) {
+                    continue;
+                }
+                page.add(toProduct(docs.get(docId)));
+            }
+
+            return ProductSearchResponse.builder()
+                    .products(page)
+                    .total(matched.getCardinality())
+                    .categories(facets)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static ProductDTO toProduct(Entry entry) {
+        return ProductDTO.builder()
+                .id(entry.id())
+                .title(entry.title())
+                .category(entry.category())
+                .price(entry.price())
+                .images(entry.images())
+                .build();
+    }
+
+    // ==================== 索引维护 ====================
+
+    private void upsert(Long id, String title, String category, String description,
+                        Double price, List<String> images) {
+        lock.writeLock().lock();
+        try {
+            Integer docId = docIds.get(id);
+            if (docId == null) {
+                docId = docs.size();
+                docs.add(null);
+                docIds.put(id, docId);
+            }
+
+            Entry previous = docs.get(docId);
+            if (previous != null) {
+                if (description == null) {
+                    description = previous.description();
+                }
+                unindex(docId);
+            }
+
+            Set<String> terms = new LinkedHashSet<>();
+            terms.addAll(tokenize(title));
+            terms.addAll(tokenize(category));
+            terms.addAll(tokenize(description));
+
+            for (String term : terms) {
+                RoaringBitmap termDocs = postings.get(term);
+                if (termDocs == null) {
+                    termDocs = new RoaringBitmap();
+                    postings.put(term, termDocs);
+                    addGrams(term);
+                }
+                termDocs.add(docId);
+            }
+            if (category != null) {
+                categoryPostings.computeIfAbsent(category, k -> new RoaringBitmap()).add(docId);
+            }
+            liveDocs.add(docId);
+            docs.set(docId, new Entry(id, title, category, description, price, images, terms));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(int docId) {
+        Entry entry = docs.get(docId);
+        for (String term : entry.terms()) {
+            removeFrom(postings, term, docId);
+            if (!postings.containsKey(term)) {
+                removeGrams(term);
+            }
+        }
+        if (entry.category() != null) {
+            removeFrom(categoryPostings, entry.category(), docId);
+        }
+        liveDocs.remove(docId);
+    }
+
+    private static void removeFrom(Map<String, RoaringBitmap> index, String key, int docId) {
+        RoaringBitmap bitmap = index.get(key);
+        if (bitmap != null) {
+            bitmap.remove(docId);
+            if (bitmap.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private void addGrams(String term) {
+        for (String gram : grams(term)) {
+            termGrams.computeIfAbsent(gram, k -> new HashSet<>()).add(term);
+        }
+    }
+
+    private void removeGrams(String term) {
+        for (String gram : grams(term)) {
+            Set<String> terms = termGrams.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    termGrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 带首尾标记的字符二元组, 例如 "shoe" -> ^s, sh, ho, oe, e$
+     */
+    static Set<String> grams(String term) {
+        String padded = "^" + term + "$";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 2 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 单个查询词 -> 命中文档: 精确 + 前缀, 都没有命中时再做编辑距离容错
+     */
+    private RoaringBitmap lookup(String token) {
+        RoaringBitmap result = new RoaringBitmap();
+        RoaringBitmap exact = postings.get(token);
+        if (exact != null) {
+            result.or(exact);
+        }
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            for (RoaringBitmap bitmap : postings.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                result.or(bitmap);
+            }
+        }
+        if (result.isEmpty() && token.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            for (String term : fuzzyCandidates(token, maxEdits)) {
+                if (editDistance(token, term, maxEdits) <= maxEdits) {
+                    result.or(postings.get(term));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 候选词筛选: 每次编辑最多破坏 3 个二元组 (相邻交换), 共享二元组太少的词不可能在 maxEdits 以内
+     */
+    private List<String> fuzzyCandidates(String token, int maxEdits) {
+        Set<String> tokenGrams = grams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : tokenGrams) {
+            Set<String> terms = termGrams.get(gram);
+            if (terms != null) {
+                for (String term : terms) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        int minShared = Math.max(1, tokenGrams.size() - 3 * maxEdits);
+        List<String> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            String term = candidate.getKey();
+            if (candidate.getValue() >= minShared && Math.abs(term.length() - token.length()) <= maxEdits) {
+                candidates.add(term);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 编辑距离 (含相邻字符交换), 超过 maxEdits 时提前返回
+     */
+    static int editDistance(String a, String b, int maxEdits) {
+        int n = a.length();
+        int m = b.length();
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                curr[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxEdits) {
+                return rowMin;
+            }
+            int[] tmp = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[m];
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,12 +1,18 @@
 package springbackend.Service;
 
+import springbackend.DTO.ApiResponse;
 import springbackend.DTO.BehaviorMessage;
 import springbackend.DTO.ProductDTO;
 import springbackend.DTO.ProductDetailResponse;
+import springbackend.DTO.SerializedResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 产品服务 - 所有数据从 Python 引擎获取
@@ -15,25 +21,97 @@ import java.util.List;
 @Slf4j
 public class ProductService {
 
+    private static final int MENU_CACHE_SIZE = 10_000;
+    private static final int RELATED_COUNT = 9;
+    private static final int MIN_LOCAL_RELATED = 3;
+    private static final String PRODUCT_CACHE_PREFIX = "product:";
+
     private final RecommendEngineService recommendEngineService;
+    private final CoVisitationService coVisitationService;
+    private final ProductSearchService productSearchService;
+    private final ResponseCacheService responseCacheService;
+
+    // 每个用户最近一次成功的菜单 (限流降级时只返回给该用户自己)
+    private final Map<Long, List<ProductDTO>> menuCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, List<ProductDTO>> eldest) {
+                    return size() > MENU_CACHE_SIZE;
+                }
+            });
 
-    public ProductService(RecommendEngineService recommendEngineService) {
+    public ProductService(RecommendEngineService recommendEngineService,
+                          CoVisitationService coVisitationService,
+                          ProductSearchService productSearchService,
+                          ResponseCacheService responseCacheService) {
         this.recommendEngineService = recommendEngineService;
+        this.coVisitationService = coVisitationService;
+        this.productSearchService = productSearchService;
+        this.responseCacheService = responseCacheService;
     }
 
     /**
      * 获取推荐菜单 (9个产品)
+     * 超过请求截止时间时不报错, 返回该用户缓存的菜单或降级菜单
      */
     public List<ProductDTO> getMenuRecommendations(Long userId) {
         log.info("Getting menu recommendations for user: {}", userId);
-        return recommendEngineService.getRecommendations(userId);
+        List<ProductDTO> products;
+        try {
+            products = recommendEngineService.getRecommendations(userId);
+        } catch (DeadlineExceededException e) {
+            log.warn("Menu deadline exceeded for user {}, serving cached menu", userId);
+            AdmissionControlService.recordDownstreamFailure();
+            return getCachedMenu(userId);
+        }
+        if (products != null && !products.isEmpty() && !recommendEngineService.isMockRecommendations(products)) {
+            menuCache.put(userId, products);
+        }
+        return products;
+    }
+
+    /**
+     * 获取缓存的菜单 (降级用, 不访问推荐引擎)
+     * 优先返回该用户上次的菜单, 否则返回非个性化的降级菜单 (不会返回其他用户的个性化菜单)
+     */
+    public List<ProductDTO> getCachedMenu(Long userId) {
+        List<ProductDTO> cached = userId != null ? menuCache.get(userId) : null;
+        return cached != null ? cached : recommendEngineService.getFallbackRecommendations();
+    }
+
+    /**
+     * 删除某个用户的缓存菜单
+     */
+    public void evictCachedMenu(Long userId) {
+        menuCache.remove(userId);
+    }
+
+    /**
+     * 读取缓存的产品详情响应 (详情对所有用户相同), 命中时只发送点击行为, 返回缓存的 JSON 字节; 未命中返回 null
+     */
+    public SerializedResponse getCachedProductDetail(Long productId, Long userId) {
+        ResponseCacheService.Entry cached = responseCacheService.get(PRODUCT_CACHE_PREFIX + productId);
+        if (cached == null) {
+            return null;
+        }
+        log.debug("Serving cached product detail for productId: {}", productId);
+        sendClick((ProductDetailResponse) cached.source(), userId);
+        return cached.response();
+    }
+
+    /**
+     * 序列化并缓存产品详情响应; 任何部分来自降级数据 (isFallback) 的详情不应缓存
+     */
+    public SerializedResponse cacheProductDetail(ApiResponse<ProductDetailResponse> response) {
+        ProductDetailResponse product = response.getData();
+        return responseCacheService.put(PRODUCT_CACHE_PREFIX + product.getId(), response, product);
     }
 
     /**
      * 获取产品详情
      * 1. 从 Python 获取产品信息
      * 2. 发送点击行为给 Python
-     * 3. 获取相关图片
+     * 3. 获取相关商品 (本地共现索引足够时不再请求引擎)
      */
     public ProductDetailResponse getProductDetail(Long productId, Long userId) {
         log.info("Getting product detail for productId: {}, userId: {}", productId, userId);
@@ -42,6 +120,40 @@ public class ProductService {
         ProductDetailResponse product = recommendEngineService.getProductDetail(productId);
 
         // 2. 发送点击行为给推荐引擎
+        sendClick(product, userId);
+
+        // 3. 获取相关商品, 本地共现数据不足时再从引擎获取相关图片 (9张)
+        //    引擎调用只使用请求剩余的时间, 截止时间已过时抛出 DeadlineExceededException
+        List<ProductDTO> relatedProducts = getRelatedProducts(productId);
+        product.setRelatedProducts(relatedProducts);
+        if (relatedProducts.size() >= MIN_LOCAL_RELATED) {
+            product.setRelatedImages(firstImages(relatedProducts));
+        } else {
+            List<String> relatedImages = recommendEngineService.getRelatedImages(productId);
+            product.setRelatedImages(relatedImages);
+            if (recommendEngineService.isMockRelatedImages(relatedImages)) {
+                product.setFallback(true);
+            }
+        }
+
+        return product;
+    }
+
+    /**
+     * 本地共现索引中的相关商品 (只返回已收录产品信息的)
+     */
+    public List<ProductDTO> getRelatedProducts(Long productId) {
+        List<ProductDTO> related = new ArrayList<>(RELATED_COUNT);
+        for (Long relatedId : coVisitationService.getRelated(productId, RELATED_COUNT)) {
+            ProductDTO relatedProduct = productSearchService.find(relatedId);
+            if (relatedProduct != null) {
+                related.add(relatedProduct);
+            }
+        }
+        return related;
+    }
+
+    private void sendClick(ProductDetailResponse product, Long userId) {
         BehaviorMessage clickBehavior = BehaviorMessage.builder()
                 .productId(product.getId())
                 .title(product.getTitle())
@@ -50,11 +162,22 @@ public class ProductService {
                 .userId(userId)
                 .build();
         recommendEngineService.sendBehavior(clickBehavior);
+    }
 
-        // 3. 获取相关图片 (9张)
-        List<String> relatedImages = recommendEngineService.getRelatedImages(productId);
-        product.setRelatedImages(relatedImages);
+    /**
+     * 是否为降级的 Mock 推荐 (所有用户相同)
+     */
+    public boolean isMockMenu(List<ProductDTO> products) {
+        return recommendEngineService.isMockRecommendations(products);
+    }
 
-        return product;
+    private static List<String> firstImages(List<ProductDTO> products) {
+        List<String> images = new ArrayList<>(products.size());
+        for (ProductDTO p : products) {
+            if (p.getImages() != null && !p.getImages().isEmpty()) {
+                images.add(p.getImages().get(0));
+            }
+        }
+        return images;
     }
 }
\ No newline at end of file
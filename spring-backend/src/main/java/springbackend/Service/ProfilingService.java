@@ -0,0 +1,139 @@
+package springbackend.Service;
+
+import springbackend.DTO.RecordingStatusResponse;
+import springbackend.Profiling.BehaviorDispatchEvent;
+import springbackend.Profiling.EngineCallEvent;
+import springbackend.Profiling.RedisOperationEvent;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * 按需 JFR 录制 - 线上节点出现延迟尖刺时开启, 定位时间花在引擎 HTTP / Redis / Jackson 还是 GC
+ * 1. 同一时间只有一个有界的连续录制 (环形缓冲: 最长保留 max-age, 最多 max-size; 请求参数不能超过这两个上限)
+ * 2. dump 把当前缓冲写到临时文件, 录制继续进行
+ * 3. 未录制时自定义事件 commit 几乎没有开销
+ */
+@Service
+@Slf4j
+public class ProfilingService {
+
+    private static final String RECORDING_NAME = "spring-backend-on-demand";
+
+    private final String settings;
+    private final Duration defaultMaxAge;
+    private final long defaultMaxSizeBytes;
+
+    private Recording recording;
+
+    public ProfilingService(@Value("${profiling.settings:default}") String settings,
+                            @Value("${profiling.max-age-minutes:10}") long maxAgeMinutes,
+                            @Value("${profiling.max-size-mb:100}") long maxSizeMb) {
+        this.settings = settings;
+        this.defaultMaxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.defaultMaxSizeBytes = maxSizeMb * 1024 * 1024;
+    }
+
+    /**
+     * 开始录制, 已在录制时返回当前状态
+     * 参数不能超过配置的 max-age-minutes / max-size-mb, 超出时按上限录制
+     */
+    public synchronized RecordingStatusResponse start(Long maxAgeMinutes, Long maxSizeMb) throws IOException, ParseException {
+        if (isRunning()) {
+            return status();
+        }
+
+        Recording newRecording = new Recording(Configuration.getConfiguration(settings));
+        newRecording.setName(RECORDING_NAME);
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(maxAgeMinutes != null
+                ? Duration.ofMinutes(clamp(maxAgeMinutes, defaultMaxAge.toMinutes())) : defaultMaxAge);
+        newRecording.setMaxSize(maxSizeMb != null
+                ? clamp(maxSizeMb, defaultMaxSizeBytes / (1024 * 1024)) * 1024 * 1024 : defaultMaxSizeBytes);
+        // 环境变量和系统属性可能包含密钥, 录制文件会被下载, 不记录
+        newRecording.disable("jdk.InitialEnvironmentVariable");
+        newRecording.disable("jdk.InitialSystemProperty");
+        // 自定义事件不设阈值, 每次调用都记录
+        newRecording.enable(EngineCallEvent.class).withoutThreshold();
+        newRecording.enable(RedisOperationEvent.class).withoutThreshold();
+        newRecording.enable(BehaviorDispatchEvent.class).withoutThreshold();
+        newRecording.start();
+
+        closeRecording();
+        recording = newRecording;
+        log.info("JFR recording started: settings={}, maxAge={}, maxSize={} bytes",
+                settings, recording.getMaxAge(), recording.getMaxSize());
+        return status();
+    }
+
+    /**
+     * 停止并丢弃录制 (需要数据时先 dump)
+     */
+    public synchronized RecordingStatusResponse stop() {
+        if (recording != null) {
+            closeRecording();
+            log.info("JFR recording stopped");
+        }
+        return status();
+    }
+
+    /**
+     * 把当前录制内容写到临时文件, 调用方负责删除
+     */
+    public synchronized Path dump() throws IOException {
+        if (!isRunning()) {
+            throw new IllegalStateException("No JFR recording is running");
+        }
+        Path file = Files.createTempFile("spring-backend-", ".jfr");
+        recording.dump(file);
+        log.info("JFR recording dumped to {} ({} bytes)", file, Files.size(file));
+        return file;
+    }
+
+    public synchronized RecordingStatusResponse status() {
+        if (!isRunning()) {
+            return RecordingStatusResponse.builder()
+                    .running(false)
+                    .settings(settings)
+                    .build();
+        }
+        return RecordingStatusResponse.builder()
+                .running(true)
+                .settings(settings)
+                .startedAt(recording.getStartTime().toEpochMilli())
+                .maxAgeSeconds(recording.getMaxAge().toSeconds())
+                .maxSizeBytes(recording.getMaxSize())
+                .sizeBytes(recording.getSize())
+                .build();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeRecording();
+    }
+
+    private static long clamp(long value, long max) {
+        return Math.max(1, Math.min(value, max));
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
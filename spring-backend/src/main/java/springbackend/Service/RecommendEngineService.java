@@ -3,30 +3,58 @@ package springbackend.Service;
 import springbackend.DTO.BehaviorMessage;
 import springbackend.DTO.ProductDTO;
 import springbackend.DTO.ProductDetailResponse;
+import springbackend.Profiling.BehaviorDispatchEvent;
+import springbackend.Profiling.EngineCallEvent;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
- * 推荐引擎服务 - 所有数据从 Python 获取
+ * 推荐引擎服务 - 所有数据从 Python 获取 (多实例负载均衡与对冲见 EngineClient)
+ * 传输编码由 recommendation.engine.protocol 选择: json (默认) 或 smile (Jackson 二进制 JSON)
+ * 请求截止时间 (Deadline) 已过时抛出 DeadlineExceededException, 不返回降级数据; 行为上报异步发送, 不受截止时间约束
+ * 每次调用记录 JFR 事件 (EngineCallEvent / BehaviorDispatchEvent), 见 ProfilingService
  */
 @Service
 @Slf4j
 public class RecommendEngineService {
 
-    private final RestTemplate restTemplate;
+    private final EngineClient engineClient;
+    private final ProductSearchService productSearchService;
+    private final CoVisitationService coVisitationService;
+    private final CatalogSnapshotService catalogSnapshotService;
 
-    @Value("${recommendation.engine.url}")
-    private String engineUrl;
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
 
-    public RecommendEngineService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    private final MediaType engineMediaType;
+
+    // 行为上报: 虚拟线程发送, 信号量限制进行中的数量
+    private final ExecutorService behaviorExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore behaviorPermits;
+
+    public RecommendEngineService(EngineClient engineClient,
+                                  ProductSearchService productSearchService,
+                                  CoVisitationService coVisitationService,
+                                  CatalogSnapshotService catalogSnapshotService,
+                                  @Value("${recommendation.engine.protocol:json}") String protocol,
+                                  @Value("${recommendation.engine.behavior.max-in-flight:256}") int behaviorMaxInFlight) {
+        this.engineClient = engineClient;
+        this.productSearchService = productSearchService;
+        this.coVisitationService = coVisitationService;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.engineMediaType = resolveMediaType(protocol);
+        this.behaviorPermits = new Semaphore(behaviorMaxInFlight);
     }
 
     /**
@@ -37,79 +65,172 @@ public class RecommendEngineService {
     public List<ProductDTO> getRecommendations(Long userId) {
         log.info("Fetching recommendations from Python engine for user: {}", userId);
 
+        EngineCallEvent event = EngineCallEvent.start("recommendations", userId, null);
         try {
-            String url = engineUrl + "/recommendations?userId=" + userId;
-
-            ResponseEntity<List<ProductDTO>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
+            List<ProductDTO> products = engineClient.get(
+                    "/recommendations?userId=" + userId,
+                    new HttpEntity<>(engineHeaders()),
                     new ParameterizedTypeReference<List<ProductDTO>>() {}
             );
 
-            List<ProductDTO> products = response.getBody();
             log.info("Successfully fetched {} recommendations from Python", products != null ? products.size() : 0);
+            // 增量更新搜索索引 (降级的 Mock 数据不收录)
+            productSearchService.indexAll(products);
             return products;
 
+        } catch (DeadlineExceededException e) {
+            // 请求已超过截止时间, 不再降级, 直接结束本次请求
+            event.failed(e);
+            throw e;
         } catch (Exception e) {
             log.error("Error fetching recommendations from Python engine", e);
+            event.fallback(e);
+            AdmissionControlService.recordDownstreamFailure();
             // 返回 Mock 数据作为降级
             return getMockRecommendations();
+        } finally {
+            event.commit();
         }
     }
 
     /**
      * 获取产品详情
+     * 优先读取本地目录快照, 快照中没有时再请求引擎
      * Python API: GET {engineUrl}/products/{productId}
      * 返回: {"id": 1, "title": "...", "category": "...", "description": "...", "price": 10.0, "images": ["url1", "url2"]}
      */
     public ProductDetailResponse getProductDetail(Long productId) {
-        log.info("Fetching product detail from Python engine for productId: {}", productId);
-
+        // 产品详情与用户无关, 事件中 userId 为 0
+        EngineCallEvent event = EngineCallEvent.start("productDetail", null, productId);
         try {
-            String url = engineUrl + "/products/" + productId;
+            ProductDetailResponse snapshotProduct = readSnapshot(productId);
+            if (snapshotProduct != null) {
+                log.debug("Serving product detail from catalog snapshot for productId: {}", productId);
+                event.fromSnapshot();
+                // 被访问过的快照产品才进入搜索索引 (快照切换时由 CatalogSnapshotService 刷新)
+                if (productSearchService.find(productId) == null) {
+                    productSearchService.index(snapshotProduct);
+                }
+                return snapshotProduct;
+            }
 
-            ResponseEntity<ProductDetailResponse> response = restTemplate.getForEntity(
-                    url,
-                    ProductDetailResponse.class
+            log.info("Fetching product detail from Python engine for productId: {}", productId);
+            ProductDetailResponse product = engineClient.get(
+                    "/products/" + productId,
+                    new HttpEntity<>(engineHeaders()),
+                    new ParameterizedTypeReference<ProductDetailResponse>() {}
             );
 
-            ProductDetailResponse product = response.getBody();
             log.info("Successfully fetched product detail from Python: {}", product != null ? product.getTitle() : "null");
+            productSearchService.index(product);
             return product;
 
+        } catch (DeadlineExceededException e) {
+            // 请求已超过截止时间, 不再降级, 直接结束本次请求
+            event.failed(e);
+            throw e;
+        } catch (HttpClientErrorException.NotFound e) {
+            // 产品已下架: 不再出现在搜索结果中
+            log.warn("Product {} not found in Python engine, removing from search index", productId);
+            productSearchService.remove(productId);
+            event.fallback(e);
+            return getMockProductDetail(productId);
         } catch (Exception e) {
             log.error("Error fetching product detail from Python engine", e);
+            event.fallback(e);
+            AdmissionControlService.recordDownstreamFailure();
             // 返回 Mock 数据作为降级
             return getMockProductDetail(productId);
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * 读取快照, 记录损坏时记录日志并返回 null, 由引擎 / Mock 兜底
+     */
+    private ProductDetailResponse readSnapshot(Long productId) {
+        try {
+            return catalogSnapshotService.getProductDetail(productId);
+        } catch (RuntimeException e) {
+            log.error("Corrupt catalog snapshot record for productId: {}", productId, e);
+            return null;
         }
     }
 
     /**
-     * 发送用户行为消息给推荐引擎
+     * 发送用户行为消息给推荐引擎 (异步, 不阻塞调用方)
+     * 行为发送不受请求截止时间约束: 购物车 / 订单已写入 Redis 后请求超时, 事件也不会丢失
+     * 进行中的发送达到上限时丢弃并记录告警, 避免引擎变慢时积压
      * Python API: POST {engineUrl}/behavior
      * Body: {"productId": 1, "title": "...", "category": "...", "action": "CLICK", "userId": 1}
      */
     public void sendBehavior(BehaviorMessage message) {
-        log.info("Sending behavior to Python engine: {}", message);
+        // 本地共现索引 (不依赖推荐引擎是否可用)
+        coVisitationService.record(message);
 
+        if (!behaviorPermits.tryAcquire()) {
+            log.warn("Too many behaviors in flight, dropping: {}", message);
+            BehaviorDispatchEvent event = BehaviorDispatchEvent.start(
+                    message.getAction(), message.getUserId(), message.getProductId());
+            event.failed(new RejectedExecutionException("Behavior dispatch queue full"));
+            event.commit();
+            return;
+        }
         try {
-            String url = engineUrl + "/behavior";
+            behaviorExecutor.execute(() -> {
+                try {
+                    dispatchBehavior(message);
+                } catch (Exception e) {
+                    log.error("Error sending behavior to Python engine", e);
+                    // 不抛出异常,避免影响主流程
+                } finally {
+                    behaviorPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            behaviorPermits.release();
+            log.warn("Behavior executor is shut down, dropping: {}", message);
+        }
+    }
+
+    /**
+     * 同步发送用户行为, 引擎出错时抛出异常 (订单处理用: 失败的订单保留租约, 到期后重试)
+     * 送达后才计入本地共现索引, 重试不会重复计入
+     */
+    public void sendBehaviorOrThrow(BehaviorMessage message) throws Exception {
+        dispatchBehavior(message);
+        coVisitationService.record(message);
+    }
+
+    private void dispatchBehavior(BehaviorMessage message) throws Exception {
+        log.info("Sending behavior to Python engine: {}", message);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+        BehaviorDispatchEvent event = BehaviorDispatchEvent.start(
+                message.getAction(), message.getUserId(), message.getProductId());
+        try {
+            HttpHeaders headers = engineHeaders();
+            headers.setContentType(engineMediaType);
 
             HttpEntity<BehaviorMessage> request = new HttpEntity<>(message, headers);
 
-            restTemplate.postForObject(url, request, Void.class);
+            engineClient.post("/behavior", request);
+            event.delivered();
             log.info("Behavior sent successfully to Python");
 
         } catch (Exception e) {
-            log.error("Error sending behavior to Python engine", e);
-            // 不抛出异常,避免影响主流程
+            event.failed(e);
+            throw e;
+        } finally {
+            event.commit();
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        behaviorExecutor.shutdown();
+    }
+
     /**
      * 获取产品相关的9张图片
      * Python API: GET {engineUrl}/images?productId={productId}
@@ -118,31 +239,82 @@ public class RecommendEngineService {
     public List<String> getRelatedImages(Long productId) {
         log.info("Fetching related images from Python engine for productId: {}", productId);
 
+        EngineCallEvent event = EngineCallEvent.start("relatedImages", null, productId);
         try {
-            String url = engineUrl + "/images?productId=" + productId;
-
-            ResponseEntity<List<String>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
+            List<String> images = engineClient.get(
+                    "/images?productId=" + productId,
+                    new HttpEntity<>(engineHeaders()),
                     new ParameterizedTypeReference<List<String>>() {}
             );
 
-            List<String> images = response.getBody();
             log.info("Successfully fetched {} related images from Python", images != null ? images.size() : 0);
             return images;
 
+        } catch (DeadlineExceededException e) {
+            // 请求已超过截止时间, 不再降级, 直接结束本次请求
+            event.failed(e);
+            throw e;
         } catch (Exception e) {
             log.error("Error fetching related images from Python engine", e);
+            event.fallback(e);
+            AdmissionControlService.recordDownstreamFailure();
             // 返回 Mock 数据作为降级
             return getMockRelatedImages();
+        } finally {
+            event.commit();
+        }
+    }
+
+    // ==================== 传输编码 ====================
+
+    /**
+     * 未知的编码直接启动失败, 避免拼写错误时悄悄退回 JSON
+     */
+    static MediaType resolveMediaType(String protocol) {
+        String value = protocol == null ? "" : protocol.trim();
+        if (value.equalsIgnoreCase("json")) {
+            return MediaType.APPLICATION_JSON;
+        }
+        if (value.equalsIgnoreCase("smile")) {
+            return APPLICATION_SMILE;
         }
+        throw new IllegalArgumentException(
+                "Unsupported recommendation.engine.protocol '" + protocol + "' (expected json or smile)");
+    }
+
+    private HttpHeaders engineHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(engineMediaType));
+        return headers;
     }
 
     // ==================== Mock 数据 (降级方案) ====================
 
+    /**
+     * 降级推荐对所有用户相同, 只构建一次 (可按引用判断是否为降级数据)
+     */
+    private static final List<ProductDTO> MOCK_RECOMMENDATIONS = buildMockRecommendations();
+
+    /**
+     * 是否为降级的 Mock 推荐 (所有用户共享同一份, 可缓存序列化结果)
+     */
+    public boolean isMockRecommendations(List<ProductDTO> products) {
+        return products == MOCK_RECOMMENDATIONS;
+    }
+
+    /**
+     * 非个性化的降级菜单 (限流时返回, 不访问推荐引擎)
+     */
+    public List<ProductDTO> getFallbackRecommendations() {
+        return MOCK_RECOMMENDATIONS;
+    }
+
     private List<ProductDTO> getMockRecommendations() {
         log.warn("Using mock recommendations data");
+        return MOCK_RECOMMENDATIONS;
+    }
+
+    private static List<ProductDTO> buildMockRecommendations() {
         List<ProductDTO> mockProducts = new ArrayList<>();
         for (int i = 1; i <= 9; i++) {
             mockProducts.add(ProductDTO.builder()
@@ -153,7 +325,7 @@ public class RecommendEngineService {
                     .images(List.of("https://via.placeholder.com/300?text=Product+" + i))
                     .build());
         }
-        return mockProducts;
+        return List.copyOf(mockProducts);
     }
 
     private ProductDetailResponse getMockProductDetail(Long productId) {
@@ -166,15 +338,32 @@ public class RecommendEngineService {
                 .price(10.0 + productId)
                 .images(List.of("https://via.placeholder.com/300?text=Product+" + productId))
                 .relatedImages(getMockRelatedImages())
+                .fallback(true)
                 .build();
     }
 
+    /**
+     * 降级的相关图片, 与降级推荐一样只构建一次, 按引用判断
+     */
+    private static final List<String> MOCK_RELATED_IMAGES = buildMockRelatedImages();
+
+    /**
+     * 是否为降级的 Mock 相关图片 (含有降级数据的产品详情不缓存)
+     */
+    public boolean isMockRelatedImages(List<String> images) {
+        return images == MOCK_RELATED_IMAGES;
+    }
+
     private List<String> getMockRelatedImages() {
         log.warn("Using mock related images data");
+        return MOCK_RELATED_IMAGES;
+    }
+
+    private static List<String> buildMockRelatedImages() {
         List<String> mockImages = new ArrayList<>();
         for (int i = 1; i <= 9; i++) {
             mockImages.add("https://via.placeholder.com/300?text=Related+" + i);
         }
-        return mockImages;
+        return List.copyOf(mockImages);
     }
 }
\ No newline at end of file
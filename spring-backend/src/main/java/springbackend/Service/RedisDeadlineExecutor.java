@@ -0,0 +1,92 @@
+package springbackend.Service;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 按请求截止时间执行 Redis 命令
+ * RedisTemplate 的同步命令只能使用全局的 spring.data.redis.timeout; 这里通过 Lettuce 异步 API 发送命令
+ * 1. 读命令只等待 min(请求剩余时间, 全局超时), 超过截止时间抛出 DeadlineExceededException
+ * 2. 写命令只在发送前检查截止时间; 发送后可能已在服务端执行, 等待确认 (全局超时), 不因截止时间放弃,
+ *    否则客户端收到 504 后会重试一次实际已成功的写入
+ * 命令使用原始字节 (ByteArrayCodec), 键 / 值的序列化由调用方负责
+ */
+@Component
+public class RedisDeadlineExecutor {
+
+    private final long commandTimeoutNanos;
+
+    public RedisDeadlineExecutor(@Value("${spring.data.redis.timeout:2000ms}") Duration commandTimeout) {
+        this.commandTimeoutNanos = commandTimeout.toNanos();
+    }
+
+    /**
+     * 读命令: 只等待请求剩余的时间
+     */
+    public <T> T read(RedisOperations<?, ?> template, String operation,
+                      Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        return execute(template, operation, command, true);
+    }
+
+    /**
+     * 写命令: 截止时间已过时不发送; 发送后等待确认
+     */
+    public <T> T write(RedisOperations<?, ?> template, String operation,
+                       Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        Deadline.checkCurrent("Redis " + operation);
+        return execute(template, operation, command, false);
+    }
+
+    /**
+     * 同一操作中前面的写入已确认后的后续写命令 (例如 HSET 之后的 EXPIRE): 不再检查截止时间
+     */
+    public <T> T writeAfterCommit(RedisOperations<?, ?> template, String operation,
+                                  Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        return execute(template, operation, command, false);
+    }
+
+    private <T> T execute(RedisOperations<?, ?> template, String operation,
+                          Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command,
+                          boolean deadlineBound) {
+        return template.execute((RedisCallback<T>) connection -> {
+            if (!(connection.getNativeConnection() instanceof RedisClusterAsyncCommands<?, ?> nativeConnection)) {
+                throw new IllegalStateException("Deadline-aware Redis commands require the Lettuce driver");
+            }
+            @SuppressWarnings("unchecked")
+            RedisClusterAsyncCommands<byte[], byte[]> commands = (RedisClusterAsyncCommands<byte[], byte[]>) nativeConnection;
+            return await(command.apply(commands), operation, deadlineBound ? Deadline.current() : null);
+        });
+    }
+
+    private <T> T await(RedisFuture<T> future, String operation, Deadline deadline) {
+        long waitNanos = deadline == null ? commandTimeoutNanos : Math.min(commandTimeoutNanos, deadline.remainingNanos());
+        try {
+            return future.get(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // 取消后 Lettuce 丢弃迟到的回复; 只有读命令会因截止时间被取消
+            future.cancel(false);
+            if (deadline != null && deadline.isExpired()) {
+                throw new DeadlineExceededException("Redis " + operation);
+            }
+            throw new QueryTimeoutException("Redis " + operation + " timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new RedisSystemException("Interrupted waiting for Redis " + operation, e);
+        } catch (ExecutionException e) {
+            throw new RedisSystemException("Redis " + operation + " failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package springbackend.Service;
+
+/**
+ * 请求优先级 - 限流时按优先级从低到高依次拒绝
+ * 每个等级只能使用自适应并发上限的一部分, 高优先级请求始终保留余量
+ */
+public enum RequestPriority {
+
+    PURCHASE(1.0),        // 下单 - 可使用全部并发
+    CART_MUTATION(0.9),   // 加购/修改购物车
+    PRODUCT_DETAIL(0.75), // 产品详情 / 查看购物车
+    MENU(0.6);            // 推荐菜单 - 最先被降级
+
+    private final double limitShare;
+
+    RequestPriority(double limitShare) {
+        this.limitShare = limitShare;
+    }
+
+    /**
+     * 该优先级在当前并发上限下允许的最大在途请求数
+     */
+    public int allowedInflight(int limit) {
+        return Math.max(1, (int) (limit * limitShare));
+    }
+}
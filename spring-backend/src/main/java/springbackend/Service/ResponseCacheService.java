@@ -0,0 +1,122 @@
+package springbackend.Service;
+
+import springbackend.DTO.SerializedResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 预序列化响应缓存 - 对所有用户相同的响应只做一次 Jackson 序列化
+ * 1. 缓存 UTF-8 JSON 字节, 命中时直接写出 (SerializedResponse)
+ * 2. 目录版本变化后全部失效; 引擎数据没有版本号, 额外用 TTL 限制陈旧时间
+ * 3. 每项可附带生成该响应的源对象 (例如点击行为需要的产品信息)
+ * 4. ConcurrentHashMap 存储, 读不加锁; 超过上限时由一个线程清理过期项, 再按到期时间淘汰最旧的 10%
+ *    (上限是近似的, 清理期间的并发写入可能短暂超出)
+ * 只缓存所有用户相同的响应; 个性化响应按普通方式返回, 不经过本缓存
+ */
+@Service
+@Slf4j
+public class ResponseCacheService {
+
+    private final ObjectMapper objectMapper;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * 缓存项
+     */
+    public record Entry(SerializedResponse response, Object source, long catalogVersion, long expiresAtNanos) {
+    }
+
+    public ResponseCacheService(ObjectMapper objectMapper,
+                                CatalogSnapshotService catalogSnapshotService,
+                                @Value("${response-cache.ttl-ms:30000}") long ttlMillis,
+                                @Value("${response-cache.max-entries:10000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * 读取缓存, 已过期或目录版本已变化时返回 null
+     */
+    public Entry get(String key) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isStale(entry, catalogSnapshotService.getVersion(), System.nanoTime())) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 序列化并缓存
+     */
+    public SerializedResponse put(String key, Object body, Object source) {
+        SerializedResponse response = serialize(body);
+        cache.put(key, new Entry(response, source, catalogSnapshotService.getVersion(), System.nanoTime() + ttlNanos));
+        if (cache.size() > maxEntries) {
+            evict();
+        }
+        return response;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private static boolean isStale(Entry entry, long catalogVersion, long now) {
+        return entry.catalogVersion() != catalogVersion || now - entry.expiresAtNanos() > 0;
+    }
+
+    /**
+     * 清理过期项, 仍超出上限时淘汰到期时间最早 (最早写入) 的项, 降到上限的 90%
+     * 同一时间只有一个线程清理, 其他线程直接返回
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long catalogVersion = catalogSnapshotService.getVersion();
+            long now = System.nanoTime();
+            cache.values().removeIf(entry -> isStale(entry, catalogVersion, now));
+
+            int excess = cache.size() - maxEntries * 9 / 10;
+            if (excess > 0) {
+                List<Map.Entry<String, Entry>> oldest = new ArrayList<>(cache.entrySet());
+                oldest.sort(Comparator.comparingLong(e -> e.getValue().expiresAtNanos() - now));
+                for (Map.Entry<String, Entry> e : oldest.subList(0, Math.min(excess, oldest.size()))) {
+                    cache.remove(e.getKey(), e.getValue());
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private SerializedResponse serialize(Object body) {
+        try {
+            return new SerializedResponse(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package springbackend.Service;
+
+import springbackend.DTO.ApiResponse;
+import springbackend.DTO.MenuResponse;
+import springbackend.DTO.ProductDTO;
+import springbackend.DTO.ProductDetailResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 启动预热 - 在 ApplicationRunner 阶段同步执行
+ * Spring 在所有 runner 完成后才发布 ReadinessState.ACCEPTING_TRAFFIC,
+ * 因此预热期间 /actuator/health/readiness 返回 OUT_OF_SERVICE, 新 Pod 不会接到流量
+ * 1. 建立 Redis 连接
+ * 2. 建立推荐引擎连接并预加载热门商品 (写入搜索索引)
+ * 3. 反复执行热点代码 (搜索 / JSON 序列化 / MVC 请求链路) 触发 JIT
+ * 整个预热共用一个截止时间 (Deadline): 每次循环都检查, 引擎调用和回环请求只等待剩余时间
+ */
+@Service
+@Slf4j
+public class WarmupService implements ApplicationRunner {
+
+    private static final long WARMUP_USER_ID = 0L;
+    private static final String[] WARMUP_QUERIES = {"wireless", "organic", "fresh", "smart", "keybaord"};
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RecommendEngineService recommendEngineService;
+    private final ProductSearchService productSearchService;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final RestTemplate restTemplate;
+    private final Environment environment;
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.timeout-ms:20000}")
+    private long timeoutMillis;
+
+    @Value("${warmup.menu-rounds:3}")
+    private int menuRounds;
+
+    @Value("${warmup.iterations:2000}")
+    private int iterations;
+
+    @Value("${warmup.http-requests:5}")
+    private int httpRequests;
+
+    public WarmupService(RedisTemplate<String, Object> redisTemplate,
+                         RecommendEngineService recommendEngineService,
+                         ProductSearchService productSearchService,
+                         ProductService productService,
+                         ObjectMapper objectMapper,
+                         RestTemplate restTemplate,
+                         Environment environment) {
+        this.redisTemplate = redisTemplate;
+        this.recommendEngineService = recommendEngineService;
+        this.productSearchService = productSearchService;
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.restTemplate = restTemplate;
+        this.environment = environment;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Deadline deadline = Deadline.after(timeoutMillis);
+        log.info("Warm-up started (timeout {} ms)", timeoutMillis);
+
+        // 每一步都不能让启动失败, 出错只记录日志
+        Deadline.set(deadline);
+        try {
+            step("redis", deadline, this::warmRedis);
+            step("engine", deadline, () -> warmEngine(deadline));
+            step("hot paths", deadline, () -> warmHotPaths(deadline));
+            step("http", deadline, () -> warmHttp(deadline));
+        } finally {
+            Deadline.clear();
+            // 回环的菜单请求会写入预热用户的菜单缓存, 不能留给降级路径使用
+            productService.evictCachedMenu(WARMUP_USER_ID);
+        }
+
+        log.info("Warm-up finished in {} ms, {} products indexed",
+                System.currentTimeMillis() - start, productSearchService.size());
+    }
+
+    private void step(String name, Deadline deadline, Runnable action) {
+        if (deadline.isExpired()) {
+            log.warn("Warm-up step '{}' skipped: timeout reached", name);
+            return;
+        }
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.warn("Warm-up step '{}' failed: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * 建立 Redis 连接 (Lettuce 首次使用时才连接)
+     */
+    private void warmRedis() {
+        String pong = redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+        log.info("Warm-up redis: {}", pong);
+    }
+
+    /**
+     * 建立引擎连接, 拉取几轮推荐菜单并加载这些商品的详情 (写入搜索索引)
+     * 直接调用 RecommendEngineService, 不发送行为消息
+     */
+    private void warmEngine(Deadline deadline) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (int i = 0; i < menuRounds && !deadline.isExpired(); i++) {
+            List<ProductDTO> products = recommendEngineService.getRecommendations(WARMUP_USER_ID);
+            if (products != null) {
+                for (ProductDTO product : products) {
+                    productIds.add(product.getId());
+                }
+            }
+        }
+        for (Long productId : productIds) {
+            deadline.check("warm-up product detail");
+            recommendEngineService.getProductDetail(productId);
+        }
+        log.info("Warm-up engine: loaded {} hot products", productIds.size());
+    }
+
+    /**
+     * 热点代码 JIT 预热: 搜索 + 响应 JSON 序列化
+     */
+    private void warmHotPaths(Deadline deadline) {
+        List<ProductDTO> sample = productSearchService.search(null, null, 0, 9).getProducts();
+        ApiResponse<MenuResponse> menu = ApiResponse.success(MenuResponse.builder()
+                .products(sample)
+                .message("warm-up")
+                .build());
+        ApiResponse<ProductDetailResponse> detail = ApiResponse.success(ProductDetailResponse.builder()
+                .id(0L)
+                .title("warm-up")
+                .images(List.of())
+                .relatedImages(List.of())
+                .relatedProducts(sample)
+                .build());
+
+        for (int i = 0; i < iterations && !deadline.isExpired(); i++) {
+            productSearchService.search(WARMUP_QUERIES[i % WARMUP_QUERIES.length], null, 0, 20);
+            try {
+                objectMapper.writeValueAsBytes(menu);
+                objectMapper.writeValueAsBytes(detail);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 通过本机回环请求走一遍完整的 MVC 链路 (只调用无副作用的接口)
+     */
+    private void warmHttp(Deadline deadline) {
+        String port = environment.getProperty("local.server.port");
+        if (port == null) {
+            return;
+        }
+        String baseUrl = "http://localhost:" + port;
+        for (int i = 0; i < httpRequests && !deadline.isExpired(); i++) {
+            // 剩余时间通过请求头传给服务端, 回环请求同样受预热截止时间限制
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("X-User-Id", String.valueOf(WARMUP_USER_ID));
+            headers.set(Deadline.HEADER, String.valueOf(deadline.remainingMillis()));
+            HttpEntity<Void> request = new HttpEntity<>(headers);
+
+            restTemplate.exchange(baseUrl + "/api/menu", HttpMethod.GET, request, String.class);
+            restTemplate.exchange(baseUrl + "/api/products/search?q=" + WARMUP_QUERIES[i % WARMUP_QUERIES.length],
+                    HttpMethod.GET, request, String.class);
+        }
+    }
+}
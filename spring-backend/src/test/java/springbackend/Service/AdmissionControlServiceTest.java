@@ -0,0 +1,141 @@
+package springbackend.Service;
+
+import springbackend.Service.AdmissionControlService.Decision;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlServiceTest {
+
+    private static AdmissionControlService service(int limit, int userCapacity, double refillPerSecond) {
+        return new AdmissionControlService(true, limit, 1, 1000, userCapacity, refillPerSecond, Set.of(0L, 1L));
+    }
+
+    @Test
+    void lowerPrioritiesAreShedBeforePurchase() {
+        AdmissionControlService service = service(10, 1000, 1000);
+
+        int menuAccepted = 0;
+        while (service.tryAcquire(RequestPriority.MENU, null, null) == Decision.ACCEPTED) {
+            menuAccepted++;
+        }
+
+        assertThat(menuAccepted).isEqualTo(RequestPriority.MENU.allowedInflight(10));
+        assertThat(service.tryAcquire(RequestPriority.MENU, null, null)).isEqualTo(Decision.REJECTED_OVERLOAD);
+        assertThat(service.tryAcquire(RequestPriority.PURCHASE, null, null)).isEqualTo(Decision.ACCEPTED);
+    }
+
+    @Test
+    void userBucketRejectsAfterCapacityButNotPurchases() {
+        AdmissionControlService service = service(100, 3, 0.001);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.tryAcquire(RequestPriority.MENU, 7L, null)).isEqualTo(Decision.ACCEPTED);
+        }
+
+        assertThat(service.tryAcquire(RequestPriority.MENU, 7L, null)).isEqualTo(Decision.REJECTED_USER_RATE);
+        assertThat(service.tryAcquire(RequestPriority.MENU, 8L, null)).isEqualTo(Decision.ACCEPTED);
+        assertThat(service.tryAcquire(RequestPriority.PURCHASE, 7L, null)).isEqualTo(Decision.ACCEPTED);
+    }
+
+    @Test
+    void evictionOnlyDropsRefilledBuckets() {
+        AdmissionControlService service = service(100, 2, 0.001);
+        service.tryAcquire(RequestPriority.MENU, 3L, null);
+        service.tryAcquire(RequestPriority.MENU, 3L, null);
+
+        service.evictIdleBuckets();
+
+        // 已耗尽的桶不会被清理, 该用户仍被限速
+        assertThat(service.getTrackedUsers()).isEqualTo(1);
+        assertThat(service.tryAcquire(RequestPriority.MENU, 3L, null)).isEqualTo(Decision.REJECTED_USER_RATE);
+    }
+
+    @Test
+    void fullBucketsAreEvicted() throws InterruptedException {
+        AdmissionControlService service = service(100, 1, 1000);
+        for (long userId = 1; userId <= 50; userId++) {
+            service.tryAcquire(RequestPriority.MENU, userId, null);
+        }
+        TimeUnit.MILLISECONDS.sleep(20);
+
+        service.evictIdleBuckets();
+
+        assertThat(service.getTrackedUsers()).isZero();
+    }
+
+    @Test
+    void downstreamFailuresShrinkTheLimit() {
+        AdmissionControlService service = service(100, 1000, 1000);
+        int before = service.getLimit();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.tryAcquire(RequestPriority.PURCHASE, null, null)).isEqualTo(Decision.ACCEPTED);
+            service.release(TimeUnit.MILLISECONDS.toNanos(5), true);
+        }
+
+        assertThat(service.getLimit()).isLessThan(before);
+        assertThat(service.getInflight()).isZero();
+    }
+
+    @Test
+    void anonymousClientsAreThrottledPerAddress() {
+        AdmissionControlService service = service(100, 2, 0.001);
+
+        // 未登录的默认用户 1 和不带用户 id 的请求都按客户端地址分桶
+        for (int i = 0; i < 2; i++) {
+            assertThat(service.tryAcquire(RequestPriority.PRODUCT_DETAIL, 1L, "10.0.0.1")).isEqualTo(Decision.ACCEPTED);
+        }
+        assertThat(service.tryAcquire(RequestPriority.PRODUCT_DETAIL, null, "10.0.0.1"))
+                .isEqualTo(Decision.REJECTED_USER_RATE);
+
+        for (int client = 2; client <= 50; client++) {
+            assertThat(service.tryAcquire(RequestPriority.PRODUCT_DETAIL, 1L, "10.0.0." + client))
+                    .isEqualTo(Decision.ACCEPTED);
+            assertThat(service.tryAcquire(RequestPriority.PRODUCT_DETAIL, null, "10.0.0." + client))
+                    .isEqualTo(Decision.ACCEPTED);
+        }
+        // 已登录用户不受同一地址上匿名流量的影响
+        assertThat(service.tryAcquire(RequestPriority.PRODUCT_DETAIL, 42L, "10.0.0.1")).isEqualTo(Decision.ACCEPTED);
+    }
+
+    @Test
+    void fastFallbacksDoNotShrinkTheLimit() {
+        AdmissionControlService service = service(100, 1000, 1000);
+        for (int i = 0; i < 50; i++) {
+            service.tryAcquire(RequestPriority.MENU, null, null);
+            service.release(TimeUnit.MILLISECONDS.toNanos(50), false);
+        }
+        int before = service.getLimit();
+
+        // 引擎故障: 降级数据 1ms 返回, 比基线快
+        for (int i = 0; i < 100; i++) {
+            service.tryAcquire(RequestPriority.MENU, null, null);
+            service.release(TimeUnit.MILLISECONDS.toNanos(1), true);
+        }
+
+        assertThat(service.getLimit()).isEqualTo(before);
+    }
+
+    @Test
+    void slowFailuresShrinkTheLimitOncePerWindow() {
+        AdmissionControlService service = service(100, 1000, 1000);
+        for (int i = 0; i < 50; i++) {
+            service.tryAcquire(RequestPriority.MENU, null, null);
+            service.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+        }
+        int before = service.getLimit();
+
+        // 同一窗口内 (远小于 1 秒的失败延迟) 的一批失败只收缩一次
+        for (int i = 0; i < 30; i++) {
+            service.tryAcquire(RequestPriority.MENU, null, null);
+            service.release(TimeUnit.SECONDS.toNanos(1), true);
+        }
+
+        assertThat(service.getLimit()).isEqualTo((int) (before * 0.9));
+        assertThat(service.getInflight()).isZero();
+    }
+}
@@ -0,0 +1,148 @@
+package springbackend.Service;
+
+import springbackend.DTO.ProductDetailResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogSnapshotTest {
+
+    // 很小的分段, 让数值和字符串跨段读取
+    private static final long SMALL_CHUNK = 48;
+
+    @TempDir
+    Path dir;
+
+    private static ProductDetailResponse product(long id, String title, String category, String description,
+                                                 Double price, List<String> images) {
+        return ProductDetailResponse.builder()
+                .id(id).title(title).category(category).description(description).price(price).images(images)
+                .build();
+    }
+
+    private static List<ProductDetailResponse> catalog() {
+        List<ProductDetailResponse> products = new ArrayList<>();
+        for (long id = 100; id > 0; id -= 3) {
+            products.add(product(id, "无线耳机 Wireless " + "x".repeat((int) (id % 17)), id % 2 == 0 ? "Audio" : "音频",
+                    "Description " + id, 0.5 + id, List.of("https://example.com/" + id + ".jpg", "图片" + id)));
+        }
+        return products;
+    }
+
+    @Test
+    void roundTripAcrossChunkBoundaries() throws IOException {
+        Path file = dir.resolve("catalog.snapshot");
+        List<ProductDetailResponse> products = catalog();
+        CatalogSnapshotWriter.write(file, products);
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file, SMALL_CHUNK);
+
+        assertThat(Files.size(file)).isGreaterThan(SMALL_CHUNK * 20);
+        assertThat(snapshot.getProductCount()).isEqualTo(products.size());
+        assertThat(snapshot.getCategories()).containsExactly("音频", "Audio");
+        for (ProductDetailResponse product : products) {
+            assertThat(snapshot.getProductDetail(product.getId())).isEqualTo(product);
+        }
+        assertThat(snapshot.getProductDetail(2)).isNull();
+        assertThat(snapshot.getProductDetail(1000)).isNull();
+        assertThat(snapshot.contains(1)).isTrue();
+        assertThat(snapshot.contains(2)).isFalse();
+
+        List<Long> ids = new ArrayList<>();
+        snapshot.forEachId(ids::add);
+        assertThat(ids).isSorted().hasSize(products.size());
+        List<ProductDetailResponse> all = new ArrayList<>();
+        snapshot.forEach(all::add);
+        assertThat(all).containsExactlyInAnyOrderElementsOf(products);
+    }
+
+    @Test
+    void nullStringsAndMissingFieldsSurvive() throws IOException {
+        Path file = dir.resolve("nulls.snapshot");
+        CatalogSnapshotWriter.write(file, List.of(
+                product(7, null, null, null, null, null),
+                product(8, "", "Food", "", 1.0, List.of())));
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file, SMALL_CHUNK);
+
+        assertThat(snapshot.getProductDetail(7)).isEqualTo(product(7, null, null, null, 0.0, List.of()));
+        assertThat(snapshot.getProductDetail(8)).isEqualTo(product(8, "", "Food", "", 1.0, List.of()));
+    }
+
+    @Test
+    void indexIsPaddedToEntryAlignment() throws IOException {
+        Path file = dir.resolve("aligned.snapshot");
+        // 类目表 4 + 3 = 7 字节, 索引需从 48 开始
+        CatalogSnapshotWriter.write(file, List.of(product(1, "a", "abc", null, 1.0, List.of())));
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            assertThat(in.readInt()).isEqualTo(CatalogSnapshot.MAGIC);
+            in.skipNBytes(12);
+            long indexOffset = in.readLong();
+            long dataOffset = in.readLong();
+            assertThat(indexOffset).isEqualTo(48);
+            assertThat(dataOffset).isEqualTo(48 + CatalogSnapshot.INDEX_ENTRY_SIZE);
+            in.skipNBytes(7);
+            assertThat(in.readNBytes((int) (indexOffset - CatalogSnapshot.HEADER_SIZE - 7))).containsOnly(0);
+            assertThat(in.readLong()).isEqualTo(1L);
+            assertThat(in.readLong()).isEqualTo(dataOffset);
+        }
+        assertThat(CatalogSnapshot.open(file, CatalogSnapshot.INDEX_ENTRY_SIZE).getProductDetail(1).getCategory())
+                .isEqualTo("abc");
+    }
+
+    @Test
+    void reloadRefreshesIndexedProductsOnlyAndDropsDelistedOnes() throws IOException {
+        Path file = dir.resolve("live.snapshot");
+        CatalogSnapshotWriter.write(file, List.of(
+                product(1, "Portable Speaker", "Audio", null, 10.0, List.of()),
+                product(2, "Organic Shirt", "Clothing", null, 20.0, List.of()),
+                product(3, "Ceramic Mug", "Home", null, 8.0, List.of())));
+        ProductSearchService search = new ProductSearchService();
+        // 引擎返回过的产品
+        search.index(product(1, "Portable Speaker", "Audio", null, 9.0, List.of()));
+        search.index(product(2, "Organic Shirt", "Clothing", null, 20.0, List.of()));
+        search.index(product(99, "Engine Only Lamp", "Home", null, 5.0, List.of()));
+
+        CatalogSnapshotService service = new CatalogSnapshotService(file.toString(), search);
+
+        assertThat(service.getVersion()).isEqualTo(1);
+        assertThat(search.find(1L).getPrice()).isEqualTo(10.0);
+        // 快照中未被访问过的产品不进入堆上的索引
+        assertThat(search.find(3L)).isNull();
+        assertThat(search.size()).isEqualTo(3);
+
+        CatalogSnapshotWriter.write(file, List.of(
+                product(1, "Portable Speaker", "Audio", null, 12.0, List.of()),
+                product(3, "Ceramic Mug", "Home", null, 8.0, List.of())));
+        service.reloadIfChanged();
+
+        assertThat(service.getVersion()).isEqualTo(2);
+        assertThat(search.find(2L)).isNull();
+        assertThat(search.find(1L).getPrice()).isEqualTo(12.0);
+        // 只由引擎返回的产品不受快照切换影响
+        assertThat(search.find(99L)).isNotNull();
+    }
+
+    @Test
+    void productsWithoutIdAreRejected() {
+        Path file = dir.resolve("invalid.snapshot");
+        List<ProductDetailResponse> products = new ArrayList<>();
+        products.add(product(1, "a", "abc", null, 1.0, List.of()));
+        products.add(ProductDetailResponse.builder().title("no id").build());
+
+        assertThatThrownBy(() -> CatalogSnapshotWriter.write(file, products))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product at index 1 has no id");
+        assertThat(Files.exists(file)).isFalse();
+    }
+}
@@ -0,0 +1,70 @@
+package springbackend.Service;
+
+import springbackend.DTO.BehaviorMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoVisitationServiceTest {
+
+    private static CoVisitationService service() {
+        return new CoVisitationService(3, 30, 0.5f, 0.6f, Set.of(0L, 1L));
+    }
+
+    private static BehaviorMessage behavior(long userId, long productId, String action) {
+        return BehaviorMessage.builder().userId(userId).productId(productId).action(action).build();
+    }
+
+    @Test
+    void coVisitsAreWeightedByAction() {
+        CoVisitationService service = service();
+        service.record(behavior(10, 100, "CLICK"));
+        service.record(behavior(10, 200, "CLICK"));
+        service.record(behavior(11, 100, "CLICK"));
+        service.record(behavior(11, 300, "PURCHASE"));
+
+        // 300 (购买, 权重 3) 排在 200 (点击, 权重 1) 前面
+        assertThat(service.getRelated(100L, 10)).containsExactly(300L, 200L);
+        assertThat(service.getRelated(200L, 10)).containsExactly(100L);
+    }
+
+    @Test
+    void anonymousAndWarmupUsersAreIgnored() {
+        CoVisitationService service = service();
+        service.record(behavior(1, 100, "CLICK"));
+        service.record(behavior(1, 200, "CLICK"));
+        service.record(behavior(0, 100, "CLICK"));
+        service.record(behavior(0, 300, "CLICK"));
+
+        assertThat(service.getRelated(100L, 10)).isEmpty();
+        assertThat(service.getTrackedSessions()).isZero();
+    }
+
+    @Test
+    void decayPrunesWeakNeighbours() {
+        CoVisitationService service = service();
+        service.record(behavior(10, 100, "CLICK"));
+        service.record(behavior(10, 200, "CLICK"));
+        service.record(behavior(11, 100, "CLICK"));
+        service.record(behavior(11, 300, "PURCHASE"));
+
+        // 0.5 衰减后: 300 -> 1.5 保留, 200 -> 0.5 低于阈值 0.6 被清理
+        service.decay();
+
+        assertThat(service.getRelated(100L, 10)).containsExactly(300L);
+        assertThat(service.getRelated(200L, 10)).isEmpty();
+    }
+
+    @Test
+    void neighbourListIsBounded() {
+        CoVisitationService service = service();
+        for (long productId = 200; productId < 210; productId++) {
+            service.record(behavior(10 + productId, 100, "CLICK"));
+            service.record(behavior(10 + productId, productId, "CLICK"));
+        }
+
+        assertThat(service.getRelated(100L, 10)).hasSize(3);
+    }
+}
@@ -0,0 +1,200 @@
+package springbackend.Service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EngineClientTest {
+
+    private static final ParameterizedTypeReference<String> STRING = new ParameterizedTypeReference<>() {};
+
+    private final List<StubInstance> stubs = new ArrayList<>();
+    private EngineClient client;
+
+    /**
+     * 引擎实例桩: 可调整延迟和状态码, 统计收到的请求
+     */
+    static final class StubInstance {
+        final HttpServer server;
+        final AtomicInteger requests = new AtomicInteger();
+        volatile long delayMillis;
+        volatile int status = 200;
+
+        StubInstance() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private StubInstance stub() throws IOException {
+        StubInstance stub = new StubInstance();
+        stubs.add(stub);
+        return stub;
+    }
+
+    private static EngineClient client(String urls, double budgetRatio) {
+        return new EngineClient(new RestTemplate(), urls, "", 3, 60_000, true, 95, 10, budgetRatio);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        stubs.forEach(stub -> stub.server.stop(0));
+    }
+
+    @Test
+    void slowInstanceIsHedgedToAnother() throws Exception {
+        StubInstance slow = stub();
+        StubInstance fast = stub();
+        client = client(slow.url() + "," + fast.url(), 1.0);
+
+        for (int i = 0; i < 120; i++) {
+            client.get("/recommendations?userId=" + i, HttpEntity.EMPTY, STRING);
+        }
+        client.refreshHedgeDelay();
+        assertThat(client.hedgeDelayNanos("/recommendations")).isPositive();
+
+        slow.delayMillis = 2000;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            assertThat(client.get("/recommendations?userId=1", HttpEntity.EMPTY, STRING)).isEqualTo("ok");
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        }
+    }
+
+    @Test
+    void latencyIsTrackedPerEndpointAndPostsAreNotRecorded() throws Exception {
+        StubInstance a = stub();
+        StubInstance b = stub();
+        client = client(a.url() + "," + b.url(), 0.1);
+
+        for (int i = 0; i < 120; i++) {
+            client.get("/products/" + i, HttpEntity.EMPTY, STRING);
+            client.post("/behavior", new HttpEntity<>("{}"));
+        }
+        client.refreshHedgeDelay();
+
+        assertThat(client.hedgeDelayNanos("/products/7")).isPositive();
+        assertThat(client.hedgeDelayNanos("/images?productId=7")).isEqualTo(-1);
+        assertThat(client.hedgeDelayNanos("/behavior")).isEqualTo(-1);
+    }
+
+    @Test
+    void failingInstanceIsEjected() throws Exception {
+        StubInstance broken = stub();
+        StubInstance healthy = stub();
+        client = client(broken.url() + "," + healthy.url(), 1.0);
+        for (int i = 0; i < 120; i++) {
+            client.get("/recommendations?userId=" + i, HttpEntity.EMPTY, STRING);
+        }
+        client.refreshHedgeDelay();
+
+        broken.status = 500;
+        int before = broken.requests.get();
+        for (int i = 0; i < 50; i++) {
+            // 主请求快速失败时在预算内换实例重试, 调用方不受影响
+            assertThat(client.get("/recommendations?userId=1", HttpEntity.EMPTY, STRING)).isEqualTo("ok");
+        }
+
+        // 连续失败 3 次后被摘除 60 秒, 之后不再收到请求
+        assertThat(broken.requests.get() - before).isEqualTo(3);
+    }
+
+    @Test
+    void getIsCancelledAtTheRequestDeadline() throws Exception {
+        StubInstance slow = stub();
+        slow.delayMillis = 2000;
+        client = client(slow.url(), 0.1);
+
+        Deadline.set(Deadline.after(100));
+        long start = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> client.get("/products/1", HttpEntity.EMPTY, STRING))
+                    .isInstanceOf(DeadlineExceededException.class);
+        } finally {
+            Deadline.clear();
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+
+    @Test
+    void postIsNotCancelledByAnExpiredDeadline() throws Exception {
+        StubInstance engine = stub();
+        engine.delayMillis = 200;
+        client = client(engine.url(), 0.1);
+
+        // 行为上报在 Redis 写入之后发送, 请求已超时也要送达
+        Deadline.set(Deadline.after(0));
+        try {
+            client.post("/behavior", new HttpEntity<>("{}"));
+        } finally {
+            Deadline.clear();
+        }
+        assertThat(engine.requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void endpointKeyDropsQueryAndIds() {
+        assertThat(EngineClient.endpointKey("/products/42")).isEqualTo("/products/{id}");
+        assertThat(EngineClient.endpointKey("/images?productId=42")).isEqualTo("/images");
+        assertThat(EngineClient.endpointKey("/recommendations?userId=1")).isEqualTo("/recommendations");
+    }
+
+    @Test
+    void invalidInstanceUrlsFailStartup() {
+        assertThatThrownBy(() -> client("http://a:5000,,http://b:5000", 0.1))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Empty entry");
+        assertThatThrownBy(() -> client("ftp://engine:21", 0.1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> client("localhost:5000", 0.1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> client("http://exa mple", 0.1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(EngineClient.parseInstances(" http://a:5000/ , https://b ")).hasSize(2)
+                .extracting(instance -> instance.url).containsExactly("http://a:5000", "https://b");
+    }
+}
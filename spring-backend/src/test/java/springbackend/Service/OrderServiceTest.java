@@ -0,0 +1,246 @@
+package springbackend.Service;
+
+import springbackend.Config.RedisConfig;
+import springbackend.DTO.BehaviorMessage;
+import springbackend.DTO.OrderResponse;
+import springbackend.Entity.CartItem;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OrderServiceTest {
+
+    private static final long USER_ID = 42L;
+    private static final String CART_KEY = "cart:" + USER_ID;
+
+    private static RedisServer redis;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate stringRedisTemplate;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private final List<OrderService> services = new ArrayList<>();
+    private RecommendEngineService recommendEngineService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redis = new RedisServer(port);
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        recommendEngineService = mock(RecommendEngineService.class);
+        redisTemplate.opsForHash().put(CART_KEY, "7", CartItem.builder()
+                .productId(7L).title("Portable Speaker").category("Audio").price(10.0).quantity(1).build());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (OrderService service : services) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 模拟一个实例 (独立的工作线程和租约时间)
+     */
+    private OrderService instance(long leaseMillis) {
+        OrderService service = new OrderService(stringRedisTemplate, redisTemplate, recommendEngineService,
+                new RedisDeadlineExecutor(Duration.ofSeconds(2)), 2);
+        ReflectionTestUtils.setField(service, "leaseMillis", leaseMillis);
+        ReflectionTestUtils.setField(service, "batchSize", 50);
+        ReflectionTestUtils.setField(service, "retentionHours", 1L);
+        ReflectionTestUtils.setField(service, "idempotencyHours", 1L);
+        services.add(service);
+        return service;
+    }
+
+    private static long pending() {
+        return stringRedisTemplate.opsForList().size("orders:pending");
+    }
+
+    /**
+     * 暂停 Redis 处理客户端命令, 模拟 Redis 变慢
+     */
+    private static void pauseRedis(long millis) {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.execute("CLIENT", "PAUSE".getBytes(), String.valueOf(millis).getBytes()));
+    }
+
+    private static String awaitStatus(OrderService service, String orderId, String status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        String current = null;
+        while (System.currentTimeMillis() < deadline) {
+            current = service.getOrder(USER_ID, orderId).getStatus();
+            if (status.equals(current)) {
+                break;
+            }
+            Thread.sleep(20);
+        }
+        return current;
+    }
+
+    @Test
+    void retriedPurchaseReturnsTheSameOrder() {
+        OrderService service = instance(60_000);
+
+        OrderResponse first = service.placeOrder(USER_ID, CART_KEY, "checkout-1");
+        OrderResponse retry = service.placeOrder(USER_ID, CART_KEY, "checkout-1");
+
+        assertThat(retry.getOrderId()).isEqualTo(first.getOrderId());
+        assertThat(pending()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredLeaseIsRequeuedAndCompletedByAnotherInstance() throws InterruptedException {
+        OrderService crashed = instance(100);
+        OrderService healthy = instance(60_000);
+        String orderId = crashed.placeOrder(USER_ID, CART_KEY, "checkout-1").getOrderId();
+
+        // 第一个实例领取后崩溃, 没有释放租约
+        assertThat(crashed.claimNext()).isEqualTo(orderId);
+        healthy.reapExpiredLeases();
+        assertThat(pending()).isZero();
+
+        Thread.sleep(200);
+        healthy.reapExpiredLeases();
+        assertThat(pending()).isEqualTo(1);
+
+        healthy.processPendingOrders();
+        assertThat(awaitStatus(healthy, orderId, OrderService.STATUS_COMPLETED)).isEqualTo(OrderService.STATUS_COMPLETED);
+        verify(recommendEngineService, times(1)).sendBehaviorOrThrow(any(BehaviorMessage.class));
+        assertThat(stringRedisTemplate.opsForZSet().size("orders:leases")).isZero();
+    }
+
+    @Test
+    void ordersLeasedByALiveInstanceAreNotReprocessed() throws InterruptedException {
+        OrderService busy = instance(60_000);
+        OrderService starting = instance(60_000);
+        String orderId = busy.placeOrder(USER_ID, CART_KEY, "checkout-1").getOrderId();
+        assertThat(busy.claimNext()).isEqualTo(orderId);
+
+        // 另一个实例启动并开始轮询: 不会抢走仍在租约内的订单
+        starting.reapExpiredLeases();
+        starting.processPendingOrders();
+        Thread.sleep(100);
+
+        assertThat(pending()).isZero();
+        assertThat(starting.getOrder(USER_ID, orderId).getStatus()).isEqualTo(OrderService.STATUS_PENDING);
+        verify(recommendEngineService, never()).sendBehaviorOrThrow(any(BehaviorMessage.class));
+    }
+
+    @Test
+    void placeOrderIsNotSentAfterTheDeadline() {
+        OrderService service = instance(60_000);
+
+        Deadline.set(Deadline.after(0));
+        try {
+            assertThatThrownBy(() -> service.placeOrder(USER_ID, CART_KEY, "checkout-1"))
+                    .isInstanceOf(DeadlineExceededException.class);
+        } finally {
+            Deadline.clear();
+        }
+        assertThat(pending()).isZero();
+        assertThat(redisTemplate.hasKey(CART_KEY)).isTrue();
+    }
+
+    @Test
+    void placeOrderWaitsForTheReplyOnceSent() {
+        OrderService service = instance(60_000);
+        pauseRedis(300);
+
+        // 脚本发送后才超过截止时间: 等待确认并返回订单, 而不是 504 让客户端重试
+        Deadline.set(Deadline.after(100));
+        OrderResponse order;
+        try {
+            order = service.placeOrder(USER_ID, CART_KEY, "checkout-1");
+        } finally {
+            Deadline.clear();
+        }
+        assertThat(order.getOrderId()).isNotNull();
+        assertThat(pending()).isEqualTo(1);
+    }
+
+    @Test
+    void placeOrderReloadsTheScriptAfterAFlush() {
+        OrderService service = instance(60_000);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        assertThat(service.placeOrder(USER_ID, CART_KEY, "checkout-1").getOrderId()).isNotNull();
+        assertThat(pending()).isEqualTo(1);
+    }
+
+    @Test
+    void failedPurchaseBehaviorKeepsTheLeaseAndIsRetried() throws Exception {
+        redisTemplate.opsForHash().put(CART_KEY, "8", CartItem.builder()
+                .productId(8L).title("Organic Shirt").category("Clothing").price(20.0).quantity(1).build());
+        // 第一个产品送达, 第二个产品引擎出错
+        doNothing()
+                .doThrow(new RuntimeException("engine down"))
+                .doNothing()
+                .when(recommendEngineService).sendBehaviorOrThrow(any(BehaviorMessage.class));
+        OrderService service = instance(100);
+        String orderId = service.placeOrder(USER_ID, CART_KEY, "checkout-1").getOrderId();
+
+        service.processPendingOrders();
+        Thread.sleep(100);
+
+        // 没有标记完成, 租约保留
+        assertThat(service.getOrder(USER_ID, orderId).getStatus()).isEqualTo(OrderService.STATUS_PROCESSING);
+        assertThat(stringRedisTemplate.opsForZSet().size("orders:leases")).isEqualTo(1);
+
+        Thread.sleep(100);
+        service.reapExpiredLeases();
+        service.processPendingOrders();
+
+        assertThat(awaitStatus(service, orderId, OrderService.STATUS_COMPLETED)).isEqualTo(OrderService.STATUS_COMPLETED);
+        // 已送达的产品重试时不重复发送
+        verify(recommendEngineService, times(3)).sendBehaviorOrThrow(any(BehaviorMessage.class));
+    }
+}
@@ -0,0 +1,66 @@
+package springbackend.Service;
+
+import springbackend.DTO.ProductDTO;
+import springbackend.DTO.ProductSearchResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchServiceTest {
+
+    private static ProductSearchService indexed() {
+        ProductSearchService search = new ProductSearchService();
+        search.indexAll(List.of(
+                product(1L, "Wireless Headphones", "Audio"),
+                product(2L, "Portable Speaker", "Audio"),
+                product(3L, "Organic Cotton Shirt", "Clothing")));
+        return search;
+    }
+
+    private static ProductDTO product(Long id, String title, String category) {
+        return ProductDTO.builder().id(id).title(title).category(category).price(10.0).images(List.of()).build();
+    }
+
+    private static List<Long> ids(ProductSearchResponse response) {
+        return response.getProducts().stream().map(ProductDTO::getId).toList();
+    }
+
+    @Test
+    void prefixAndCategoryFacets() {
+        ProductSearchResponse response = indexed().search("wire", null, 0, 10);
+
+        assertThat(ids(response)).containsExactly(1L);
+        assertThat(response.getCategories()).containsEntry("Audio", 1);
+    }
+
+    @Test
+    void typosAreToleratedIncludingTheFirstCharacter() {
+        ProductSearchService search = indexed();
+
+        assertThat(ids(search.search("portble", null, 0, 10))).containsExactly(2L);
+        assertThat(ids(search.search("speakre", null, 0, 10))).containsExactly(2L);
+        assertThat(ids(search.search("qrganic", null, 0, 10))).containsExactly(3L);
+    }
+
+    @Test
+    void removedProductsAreNoLongerSearchable() {
+        ProductSearchService search = indexed();
+
+        search.remove(2L);
+        assertThat(search.search("speaker", null, 0, 10).getTotal()).isZero();
+
+        assertThat(search.retainAll(id -> id == 1L)).isEqualTo(1);
+        assertThat(ids(search.search("", null, 0, 10))).containsExactly(1L);
+        // 被删除词的二元组也一并清理, 容错匹配不会命中已删除的产品
+        assertThat(search.search("qrganic", null, 0, 10).getTotal()).isZero();
+    }
+
+    @Test
+    void editDistanceCountsTranspositionsAsOneEdit() {
+        assertThat(ProductSearchService.editDistance("speakre", "speaker", 2)).isEqualTo(1);
+        assertThat(ProductSearchService.editDistance("shirt", "short", 2)).isEqualTo(1);
+        assertThat(ProductSearchService.editDistance("audio", "cotton", 1)).isGreaterThan(1);
+    }
+}
@@ -0,0 +1,105 @@
+package springbackend.Service;
+
+import springbackend.DTO.RecordingStatusResponse;
+import springbackend.Profiling.BehaviorDispatchEvent;
+import springbackend.Profiling.EngineCallEvent;
+import springbackend.Profiling.RedisOperationEvent;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfilingServiceTest {
+
+    private final ProfilingService profilingService = new ProfilingService("default", 10, 100);
+
+    @AfterEach
+    void tearDown() {
+        profilingService.shutdown();
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .toList();
+        assertThat(matching).hasSize(1);
+        return matching.get(0);
+    }
+
+    @Test
+    void customEventsAreRecordedAndReadBack() throws Exception {
+        profilingService.start(null, null);
+
+        EngineCallEvent engineCall = EngineCallEvent.start("recommendations", 42L, null);
+        engineCall.fallback(new TimeoutException());
+        engineCall.commit();
+
+        RedisOperationEvent redisOperation = RedisOperationEvent.start("HGET", "cart:42", 42L, 7L);
+        redisOperation.commit();
+
+        BehaviorDispatchEvent behavior = BehaviorDispatchEvent.start("ADD_TO_CART", 42L, 7L);
+        behavior.delivered();
+        behavior.commit();
+
+        Path file = profilingService.dump();
+        List<RecordedEvent> events;
+        try {
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        RecordedEvent engine = single(events, "springbackend.EngineCall");
+        assertThat(engine.getString("operation")).isEqualTo("recommendations");
+        assertThat(engine.getLong("userId")).isEqualTo(42L);
+        assertThat(engine.getString("source")).isEqualTo("mock");
+        assertThat(engine.getBoolean("fallback")).isTrue();
+        assertThat(engine.getString("error")).isEqualTo("TimeoutException");
+
+        RecordedEvent redis = single(events, "springbackend.RedisOperation");
+        assertThat(redis.getString("operation")).isEqualTo("HGET");
+        assertThat(redis.getString("key")).isEqualTo("cart:42");
+        assertThat(redis.getLong("productId")).isEqualTo(7L);
+
+        RecordedEvent dispatch = single(events, "springbackend.BehaviorDispatch");
+        assertThat(dispatch.getString("action")).isEqualTo("ADD_TO_CART");
+        assertThat(dispatch.getBoolean("delivered")).isTrue();
+    }
+
+    @Test
+    void environmentAndSystemPropertiesAreNotRecorded() throws Exception {
+        profilingService.start(null, null);
+
+        Path file = profilingService.dump();
+        List<RecordedEvent> events;
+        try {
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        assertThat(events).extracting(event -> event.getEventType().getName())
+                .doesNotContain("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty")
+                .contains("jdk.JVMInformation");
+    }
+
+    @Test
+    void requestedLimitsAreClampedToConfiguration() throws Exception {
+        RecordingStatusResponse status = profilingService.start(24 * 60L, 100_000L);
+
+        assertThat(status.getMaxAgeSeconds()).isEqualTo(10 * 60);
+        assertThat(status.getMaxSizeBytes()).isEqualTo(100L * 1024 * 1024);
+
+        profilingService.stop();
+        status = profilingService.start(2L, 5L);
+        assertThat(status.getMaxAgeSeconds()).isEqualTo(2 * 60);
+        assertThat(status.getMaxSizeBytes()).isEqualTo(5L * 1024 * 1024);
+    }
+}
@@ -0,0 +1,25 @@
+package springbackend.Service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecommendEngineServiceTest {
+
+    @Test
+    void protocolSelectsTheEngineMediaType() {
+        assertThat(RecommendEngineService.resolveMediaType("json")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(RecommendEngineService.resolveMediaType(" SMILE ")).isEqualTo(RecommendEngineService.APPLICATION_SMILE);
+    }
+
+    @Test
+    void unknownProtocolFailsStartup() {
+        assertThatThrownBy(() -> RecommendEngineService.resolveMediaType("msgpack"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("msgpack");
+        assertThatThrownBy(() -> RecommendEngineService.resolveMediaType(""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package springbackend.Service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisDeadlineExecutorTest {
+
+    private static final byte[] KEY = "deadline:key".getBytes(StandardCharsets.UTF_8);
+
+    private static RedisServer redis;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate template;
+
+    private final RedisDeadlineExecutor executor = new RedisDeadlineExecutor(Duration.ofSeconds(2));
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redis = new RedisServer(port);
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        template = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        template.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        Deadline.clear();
+    }
+
+    /**
+     * 暂停 Redis 处理客户端命令, 模拟 Redis 变慢
+     */
+    private static void pauseRedis(long millis) {
+        template.execute((RedisCallback<Object>) connection ->
+                connection.execute("CLIENT", "PAUSE".getBytes(), String.valueOf(millis).getBytes()));
+    }
+
+    @Test
+    void readGivesUpAtTheDeadline() {
+        pauseRedis(1000);
+        Deadline.set(Deadline.after(100));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> executor.read(template, "GET", commands -> commands.get(KEY)))
+                .isInstanceOf(DeadlineExceededException.class);
+        // 只等待剩余时间, 不等 Redis 恢复, 也不等全局命令超时
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(800);
+    }
+
+    @Test
+    void writeIsNotSentAfterTheDeadline() {
+        Deadline.set(Deadline.after(0));
+
+        assertThatThrownBy(() -> executor.write(template, "SET", commands -> commands.set(KEY, "1".getBytes())))
+                .isInstanceOf(DeadlineExceededException.class);
+        Deadline.clear();
+        assertThat(template.hasKey("deadline:key")).isFalse();
+    }
+
+    @Test
+    void sentWriteWaitsForItsReplyPastTheDeadline() {
+        pauseRedis(300);
+        Deadline.set(Deadline.after(100));
+
+        assertThat(executor.write(template, "SET", commands -> commands.set(KEY, "1".getBytes()))).isEqualTo("OK");
+        Deadline.clear();
+        assertThat(template.opsForValue().get("deadline:key")).isEqualTo("1");
+    }
+}
@@ -0,0 +1,76 @@
+package springbackend.Service;
+
+import springbackend.DTO.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheServiceTest {
+
+    private static ResponseCacheService cache(long ttlMillis, int maxEntries) {
+        CatalogSnapshotService noSnapshot = new CatalogSnapshotService("", new ProductSearchService());
+        return new ResponseCacheService(new ObjectMapper(), noSnapshot, ttlMillis, maxEntries);
+    }
+
+    @Test
+    void servesSerializedBytesUntilTheTtlExpires() throws InterruptedException {
+        ResponseCacheService cache = cache(50, 10);
+
+        cache.put("menu:mock", ApiResponse.success("menu"), "source");
+        ResponseCacheService.Entry entry = cache.get("menu:mock");
+
+        assertThat(new String(entry.response().body(), StandardCharsets.UTF_8)).contains("\"data\":\"menu\"");
+        assertThat(entry.source()).isEqualTo("source");
+
+        Thread.sleep(100);
+        assertThat(cache.get("menu:mock")).isNull();
+    }
+
+    @Test
+    void sizeStaysBoundedAndRecentEntriesSurvive() {
+        ResponseCacheService cache = cache(60_000, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("product:" + i, ApiResponse.success(i), null);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.get("product:999")).isNotNull();
+        assertThat(cache.get("product:0")).isNull();
+    }
+
+    @Test
+    void concurrentWritersKeepTheCacheBounded() throws Exception {
+        ResponseCacheService cache = cache(60_000, 200);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        cache.put("product:" + thread + ":" + i, ApiResponse.success(i), null);
+                        cache.get("product:" + thread + ":" + (i / 2));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 清理期间其他线程的写入可能短暂超出上限, 最后一次写入后会重新清理
+        cache.put("product:last", ApiResponse.success(0), null);
+        assertThat(cache.size()).isLessThanOrEqualTo(200);
+    }
+}